@@ -0,0 +1,146 @@
+package com.gettipsi.stripe;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.PriorityScheduler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single owner of the module's {@code onActivityResult} traffic. Results are routed by request
+ * code with one table lookup, instead of being offered to a listener per pending call.
+ *
+ * Fixed routes serve request codes chosen by third party SDKs, pending routes get a request
+ * code of their own per operation and are dropped when they are answered or time out.
+ */
+final class ActivityResultDispatcher {
+
+  interface Handler {
+    void onActivityResult(@Nullable Activity activity, int resultCode, @Nullable Intent data);
+  }
+
+  interface PendingHandler extends Handler {
+    /** Called instead of {@link #onActivityResult} when no result arrived in time */
+    void onTimeout();
+  }
+
+  // Request codes have to fit in the lower 16 bits, see FragmentActivity#startActivityForResult
+  static final int FIRST_PENDING_REQUEST_CODE = 40000;
+  static final int LAST_PENDING_REQUEST_CODE = 49999;
+
+  /** Long enough for a user to get through a bank's authentication page or the Google Pay sheet */
+  static final long DEFAULT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+
+  private final PriorityScheduler scheduler;
+  private final ConcurrentMap<Integer, Handler> fixed = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, Pending> pending = new ConcurrentHashMap<>();
+  private final AtomicInteger nextRequestCode = new AtomicInteger(FIRST_PENDING_REQUEST_CODE);
+
+  ActivityResultDispatcher(@NonNull PriorityScheduler scheduler) {
+    this.scheduler = ArgCheck.nonNull(scheduler);
+  }
+
+  void register(int requestCode, @NonNull Handler handler) {
+    ArgCheck.nonNull(handler);
+    ArgCheck.isTrue(requestCode < FIRST_PENDING_REQUEST_CODE || requestCode > LAST_PENDING_REQUEST_CODE);
+
+    fixed.put(requestCode, handler);
+  }
+
+  /**
+   * @return the request code to start the activity with
+   */
+  int register(@NonNull final PendingHandler handler, long timeoutMs) {
+    ArgCheck.nonNull(handler);
+    ArgCheck.isTrue(timeoutMs > 0);
+
+    final Pending entry = new Pending(handler);
+    final int requestCode = allocateRequestCode(entry);
+    // Fires on the timer thread, so busy workers cannot hold it up
+    entry.timeout = scheduler.scheduleOnTimer(new Runnable() {
+      @Override
+      public void run() {
+        if (pending.remove(requestCode, entry)) {
+          handler.onTimeout();
+        }
+      }
+    }, timeoutMs);
+    if (pending.get(requestCode) != entry) {
+      // Answered before the timeout was set
+      entry.cancelTimeout();
+    }
+    return requestCode;
+  }
+
+  void unregister(int requestCode) {
+    Pending entry = pending.remove(requestCode);
+    if (entry != null) {
+      entry.cancelTimeout();
+    }
+  }
+
+  int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * @return true if the result belonged to one of the registered routes
+   */
+  boolean dispatch(@Nullable Activity activity, int requestCode, int resultCode, @Nullable Intent data) {
+    Handler handler;
+    Pending entry = pending.remove(requestCode);
+    if (entry != null) {
+      entry.cancelTimeout();
+      handler = entry.handler;
+    } else {
+      handler = fixed.get(requestCode);
+    }
+    if (handler == null) {
+      return false;
+    }
+
+    handler.onActivityResult(activity, resultCode, data);
+    return true;
+  }
+
+  private int allocateRequestCode(Pending entry) {
+    int range = LAST_PENDING_REQUEST_CODE - FIRST_PENDING_REQUEST_CODE + 1;
+    for (int attempt = 0; attempt < range; attempt++) {
+      int requestCode = FIRST_PENDING_REQUEST_CODE
+        + (nextRequestCode.getAndIncrement() - FIRST_PENDING_REQUEST_CODE) % range;
+      if (requestCode < FIRST_PENDING_REQUEST_CODE) {
+        // The counter overflowed, start over from the beginning of the range
+        nextRequestCode.set(FIRST_PENDING_REQUEST_CODE);
+        continue;
+      }
+      if (pending.putIfAbsent(requestCode, entry) == null) {
+        return requestCode;
+      }
+    }
+    throw new IllegalStateException("Too many pending activity results");
+  }
+
+  private static final class Pending {
+    final PendingHandler handler;
+    volatile ScheduledFuture<?> timeout;
+
+    Pending(PendingHandler handler) {
+      this.handler = handler;
+    }
+
+    void cancelTimeout() {
+      ScheduledFuture<?> future = timeout;
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.InvalidParamsException;
+import com.gettipsi.stripe.util.PriorityScheduler;
+import com.gettipsi.stripe.util.PriorityScheduler.Priority;
+import com.gettipsi.stripe.util.RateLimiter;
+import com.stripe.android.Stripe;
+import com.stripe.android.model.BankAccount;
+import com.stripe.android.model.Card;
+import com.stripe.android.model.Token;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.gettipsi.stripe.Errors.toErrorCode;
+import static com.gettipsi.stripe.util.Converters.convertTokenToWritableMap;
+import static com.gettipsi.stripe.util.Converters.createBankAccount;
+import static com.gettipsi.stripe.util.Converters.createCard;
+import static com.gettipsi.stripe.util.Converters.getMapOrNull;
+
+/**
+ * Tokenizes a list of cards and bank accounts with a bounded number of requests in flight.
+ * The work runs in the background lane of the module's scheduler, so interactive requests
+ * are not held up by a large import.
+ *
+ * Every item is either {@code {card: {...}}} or {@code {bankAccount: {...}}}, and every result
+ * is either {@code {token: {...}}} or {@code {error: {code, message}}}, in the same order.
+ *
+ * Once the call is settled early, by a timeout or {@code cancelRequest}, no further item is
+ * tokenized.
+ */
+final class BatchTokenizer {
+
+  static final String CONCURRENCY = "concurrency";
+  // One worker of the shared pool is always left to other calls
+  static final int MAX_CONCURRENCY = PriorityScheduler.DEFAULT_POOL_SIZE - 1;
+  static final int DEFAULT_CONCURRENCY = MAX_CONCURRENCY;
+
+  private static final String METHOD = "createTokensBatch";
+  private static final String CARD = "card";
+  private static final String BANK_ACCOUNT = "bankAccount";
+
+  private BatchTokenizer() {}
+
+  /**
+   * @throws InvalidParamsException when more than {@link #MAX_CONCURRENCY} requests are asked
+   * for, rather than quietly running fewer
+   */
+  static int concurrencyFrom(ReadableMap options) {
+    if (options == null || !options.hasKey(CONCURRENCY)) {
+      return DEFAULT_CONCURRENCY;
+    }
+    int concurrency = options.getInt(CONCURRENCY);
+    ArgCheck.isTrue(concurrency > 0, "concurrency should be positive");
+    if (concurrency > MAX_CONCURRENCY) {
+      throw new InvalidParamsException(Collections.singletonList(
+        "concurrency should be at most " + MAX_CONCURRENCY));
+    }
+    return concurrency;
+  }
+
+  static void tokenize(@NonNull final PriorityScheduler scheduler,
+                       @NonNull final RateLimiter rateLimiter,
+                       @NonNull final CircuitBreaker circuitBreaker,
+                       @NonNull final Stripe stripe,
+                       @NonNull ReadableArray items,
+                       int concurrency,
+                       @NonNull final TrackedPromise promise) {
+    ArgCheck.nonNull(stripe);
+    ArgCheck.nonNull(items);
+
+    final int size = items.size();
+    final Object[] params = new Object[size];
+    final WritableMap[] results = new WritableMap[size];
+
+    // ReadableMaps are not safe to read from several threads, so everything is parsed up front
+    for (int i = 0; i < size; i++) {
+      try {
+        params[i] = parseItem(items.getMap(i));
+      } catch (Exception e) {
+        results[i] = errorResult(e);
+      }
+    }
+
+    if (size == 0) {
+      promise.resolve(Arguments.createArray());
+      return;
+    }
+
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger remaining = new AtomicInteger(size);
+    int workers = Math.min(concurrency, size);
+    for (int i = 0; i < workers; i++) {
+      // Each task tokenizes one item and enqueues the next one, so queued user-facing work
+      // gets the worker between items
+      scheduler.execute(Priority.BACKGROUND, new Runnable() {
+        // Item that already holds a rate limiter token and waits for it to become due
+        private int admitted = -1;
+
+        @Override
+        public void run() {
+          if (promise.isSettled()) {
+            // Nobody waits for the rest of the batch any more
+            return;
+          }
+
+          boolean wasAdmitted = admitted >= 0;
+          int i = wasAdmitted ? admitted : next.getAndIncrement();
+          admitted = -1;
+          if (i >= size) {
+            return;
+          }
+
+          if (results[i] == null && !wasAdmitted) {
+            // A batch is background work, so it waits for as long as the limiter says
+            long waitNanos = rateLimiter.acquire(METHOD, Long.MAX_VALUE);
+            if (waitNanos > 0) {
+              admitted = i;
+              scheduler.schedule(Priority.BACKGROUND, this, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+              return;
+            }
+          }
+
+          if (results[i] == null) {
+            results[i] = tokenizeItem(circuitBreaker, stripe, params[i]);
+          }
+          if (remaining.decrementAndGet() == 0) {
+            promise.resolve(toWritableArray(results));
+          } else if (next.get() < size) {
+            scheduler.execute(Priority.BACKGROUND, this);
+          }
+        }
+      });
+    }
+  }
+
+  private static Object parseItem(ReadableMap item) {
+    ArgCheck.nonNull(item);
+
+    ReadableMap card = getMapOrNull(item, CARD);
+    if (card != null) {
+      return createCard(card);
+    }
+
+    ReadableMap bankAccount = getMapOrNull(item, BANK_ACCOUNT);
+    ArgCheck.nonNull(bankAccount, "Batch item should contain either card or bankAccount");
+    return createBankAccount(bankAccount);
+  }
+
+  private static WritableMap tokenizeItem(CircuitBreaker circuitBreaker, final Stripe stripe, final Object params) {
+    try {
+      Token token = circuitBreaker.call(new Callable<Token>() {
+        @Override
+        public Token call() throws Exception {
+          return params instanceof Card
+            ? stripe.createTokenSynchronous((Card) params)
+            : stripe.createBankAccountTokenSynchronous((BankAccount) params);
+        }
+      });
+
+      WritableMap result = Arguments.createMap();
+      result.putMap("token", convertTokenToWritableMap(token));
+      return result;
+    } catch (Exception e) {
+      return errorResult(e);
+    }
+  }
+
+  private static WritableMap errorResult(Exception e) {
+    WritableMap error = Arguments.createMap();
+    error.putString("code", toErrorCode(e));
+    error.putString("message", e.getMessage());
+
+    WritableMap result = Arguments.createMap();
+    result.putMap("error", error);
+    return result;
+  }
+
+  private static WritableArray toWritableArray(WritableMap[] results) {
+    WritableArray array = Arguments.createArray();
+    for (WritableMap result : results) {
+      array.pushMap(result);
+    }
+    return array;
+  }
+
+}
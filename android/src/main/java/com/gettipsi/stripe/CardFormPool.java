@@ -0,0 +1,231 @@
+package com.gettipsi.stripe;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.util.Xml;
+
+import com.devmarvel.creditcardentry.library.CreditCardForm;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.ThemedReactContext;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.LatencyHistogram;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.ArrayDeque;
+
+/**
+ * Card forms built ahead of time for {@code TPSCardField}, so that mounting one only attaches
+ * a ready view. Off unless the {@code cardFieldPool} init option gives the number of forms to
+ * keep: they are then built one per idle moment of the UI thread, and each form taken by a
+ * mount is replaced the same way. Forms of dropped fields are not taken back, as they keep
+ * whatever props their mount set. Every form is built from the same parsed attributes.
+ *
+ * There is one pool per React context, shared by the module and the view manager, so forms
+ * never outlive the manager whose listeners they carry. The forms are dropped when the host
+ * activity is destroyed and when the catalyst instance is torn down.
+ *
+ * Forms are only touched on the UI thread, stats may be read from any.
+ */
+final class CardFormPool implements LifecycleEventListener {
+
+  static final String KEY = "cardFieldPool";
+
+  interface Factory {
+    @NonNull
+    CreditCardForm create(@NonNull Context context, @NonNull AttributeSet attributes);
+  }
+
+  private final ReactApplicationContext reactContext;
+  private final ArrayDeque<CreditCardForm> forms = new ArrayDeque<>();
+  private final LatencyHistogram pooledMounts = new LatencyHistogram();
+  private final LatencyHistogram builtMounts = new LatencyHistogram();
+
+  private volatile int capacity;
+  private volatile int size;
+  private volatile long hits;
+  private volatile long misses;
+  // Positioned on the root tag of stub_material, which form constructors only read from
+  private AttributeSet attributes;
+  private volatile Factory factory;
+  private boolean warming;
+  // Bumped by clear, so that a warm started before it stops
+  private int generation;
+
+  CardFormPool(@NonNull ReactApplicationContext reactContext) {
+    this.reactContext = ArgCheck.nonNull(reactContext);
+    reactContext.addLifecycleEventListener(this);
+  }
+
+  boolean belongsTo(@NonNull ReactApplicationContext reactContext) {
+    return this.reactContext == reactContext;
+  }
+
+  /**
+   * Sets how forms are built, the view manager does so as it is created
+   */
+  void setFactory(@NonNull Factory factory) {
+    this.factory = ArgCheck.nonNull(factory);
+  }
+
+  /**
+   * Keeps up to {@code capacity} forms built for the activity, and starts building them
+   */
+  void configure(final int capacity, @Nullable final Activity activity) {
+    ArgCheck.isTrue(capacity >= 0, "cardFieldPool should not be negative");
+
+    UiThreadUtil.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        CardFormPool.this.capacity = capacity;
+        while (forms.size() > capacity) {
+          forms.removeLast();
+        }
+        size = forms.size();
+        if (activity != null) {
+          warm(new ThemedReactContext(reactContext, activity));
+        }
+      }
+    });
+  }
+
+  /**
+   * A pooled form built for the context's activity, or null when there is none. Forms of
+   * other activities, which may be gone by now, are dropped on the way, and building the
+   * replacements starts.
+   */
+  @Nullable
+  CreditCardForm acquire(@NonNull ContextWrapper context) {
+    UiThreadUtil.assertOnUiThread();
+
+    CreditCardForm form;
+    do {
+      form = forms.pollFirst();
+    } while (form != null && !isBuiltFor(form, context));
+    size = forms.size();
+
+    if (form != null) {
+      hits++;
+    } else if (capacity > 0) {
+      misses++;
+    }
+    warm(context);
+    return form;
+  }
+
+  void recordMount(boolean pooled, long nanos) {
+    (pooled ? pooledMounts : builtMounts).recordNanos(nanos);
+  }
+
+  @NonNull
+  AttributeSet attributes(@NonNull Context context) {
+    if (attributes == null) {
+      XmlPullParser parser = context.getResources().getXml(R.xml.stub_material);
+      try {
+        parser.next();
+        parser.nextTag();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      attributes = Xml.asAttributeSet(parser);
+    }
+    return attributes;
+  }
+
+  /** {@code {size, capacity, hits, misses, mount: {pooled, built}}} */
+  WritableMap getStats() {
+    WritableMap mount = Arguments.createMap();
+    mount.putMap("pooled", pooledMounts.toWritableMap());
+    mount.putMap("built", builtMounts.toWritableMap());
+
+    WritableMap stats = Arguments.createMap();
+    stats.putInt("size", size);
+    stats.putInt("capacity", capacity);
+    stats.putDouble("hits", hits);
+    stats.putDouble("misses", misses);
+    stats.putMap("mount", mount);
+    return stats;
+  }
+
+  void resetStats() {
+    hits = 0;
+    misses = 0;
+    pooledMounts.reset();
+    builtMounts.reset();
+  }
+
+  /**
+   * Drops every form and stops building them, forms are built again on the next configure
+   */
+  void clear() {
+    UiThreadUtil.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        forms.clear();
+        size = 0;
+        warming = false;
+        generation++;
+      }
+    });
+  }
+
+  /**
+   * Called as the catalyst instance is torn down, the pool is not used after that
+   */
+  void destroy() {
+    reactContext.removeLifecycleEventListener(this);
+    clear();
+  }
+
+  @Override
+  public void onHostResume() {}
+
+  @Override
+  public void onHostPause() {}
+
+  @Override
+  public void onHostDestroy() {
+    // Every form holds the activity that is going away
+    clear();
+  }
+
+  private static boolean isBuiltFor(CreditCardForm form, ContextWrapper context) {
+    Context formContext = form.getContext();
+    return formContext instanceof ContextWrapper
+      && ((ContextWrapper) formContext).getBaseContext() == context.getBaseContext();
+  }
+
+  private void warm(final Context context) {
+    if (warming || factory == null || forms.size() >= capacity) {
+      return;
+    }
+
+    warming = true;
+    final int startedIn = generation;
+    Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+      @Override
+      public boolean queueIdle() {
+        if (startedIn != generation) {
+          return false;
+        }
+        // One form per idle moment keeps every pause short
+        if (forms.size() < capacity && factory != null) {
+          forms.addLast(factory.create(context, attributes(context)));
+          size = forms.size();
+        }
+        warming = forms.size() < capacity;
+        return warming;
+      }
+    });
+  }
+}
@@ -0,0 +1,271 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.gettipsi.stripe.util.ArgCheck;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static com.gettipsi.stripe.Errors.toErrorCode;
+import static com.gettipsi.stripe.util.Converters.getMapOrNull;
+
+/**
+ * Fails Stripe requests fast while the API looks unreachable, instead of letting every one of
+ * them wait for its own network timeout.
+ *
+ * While closed, outcomes are counted per error code over a rolling window. When the share of
+ * some code reaches its configured rate, the breaker opens and requests fail right away with
+ * {@link CircuitOpenException}. Once {@code openMs} has passed, the breaker is half-open: the
+ * next request goes through as the only probe, and its outcome closes the breaker again or
+ * reopens it. Errors that prove the API answered, such as card declines, count as healthy.
+ */
+final class CircuitBreaker {
+
+  enum State {
+    CLOSED("closed"),
+    OPEN("open"),
+    HALF_OPEN("halfOpen");
+
+    final String key;
+
+    State(String key) {
+      this.key = key;
+    }
+  }
+
+  interface Listener {
+    void onStateChanged(@NonNull State from, @NonNull State to, @Nullable String errorCode);
+  }
+
+  static final String KEY = "circuitBreaker";
+
+  private static final String WINDOW_MS = "windowMs";
+  private static final String MIN_REQUESTS = "minRequests";
+  private static final String OPEN_MS = "openMs";
+  private static final String ERROR_RATES = "errorRates";
+
+  private static final int WINDOW_BUCKETS = 10;
+  private static final Map<String, Double> DEFAULT_ERROR_RATES;
+  static {
+    Map<String, Double> rates = new HashMap<>();
+    rates.put("apiConnection", 0.5);
+    rates.put("api", 0.5);
+    rates.put("rateLimit", 0.8);
+    DEFAULT_ERROR_RATES = Collections.unmodifiableMap(rates);
+  }
+
+  private final boolean enabled;
+  private final long bucketMs;
+  private final int minRequests;
+  private final long openMs;
+  private final Map<String, Double> errorRates;
+
+  private final long[] bucketEpochs = new long[WINDOW_BUCKETS];
+  private final int[] bucketTotals = new int[WINDOW_BUCKETS];
+  private final Map<String, int[]> bucketErrors = new HashMap<>();
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private boolean probeInFlight;
+  private volatile Listener listener;
+
+  CircuitBreaker() {
+    this(true, 10000, 10, 30000, DEFAULT_ERROR_RATES);
+  }
+
+  private CircuitBreaker(boolean enabled, long windowMs, int minRequests, long openMs, Map<String, Double> errorRates) {
+    ArgCheck.isTrue(windowMs >= WINDOW_BUCKETS, "windowMs is too small");
+    ArgCheck.isTrue(minRequests > 0, "minRequests should be positive");
+    ArgCheck.isTrue(openMs > 0, "openMs should be positive");
+
+    this.enabled = enabled;
+    this.bucketMs = windowMs / WINDOW_BUCKETS;
+    this.minRequests = minRequests;
+    this.openMs = openMs;
+    this.errorRates = errorRates;
+  }
+
+  /**
+   * Reads the {@code circuitBreaker} init option: {@code false} disables the breaker, a map
+   * of {@code windowMs}, {@code minRequests}, {@code openMs} and {@code errorRates} (error
+   * code to the share of requests that trips the breaker) configures it.
+   */
+  @NonNull
+  static CircuitBreaker from(@NonNull ReadableMap options) {
+    if (!options.hasKey(KEY) || options.isNull(KEY)) {
+      return new CircuitBreaker();
+    }
+
+    switch (options.getType(KEY)) {
+      case Boolean:
+        return options.getBoolean(KEY)
+          ? new CircuitBreaker()
+          : new CircuitBreaker(false, 10000, 10, 30000, DEFAULT_ERROR_RATES);
+      case Map:
+        ReadableMap config = options.getMap(KEY);
+        Map<String, Double> errorRates = DEFAULT_ERROR_RATES;
+        ReadableMap ratesConfig = getMapOrNull(config, ERROR_RATES);
+        if (ratesConfig != null) {
+          errorRates = new HashMap<>();
+          ReadableMapKeySetIterator iterator = ratesConfig.keySetIterator();
+          while (iterator.hasNextKey()) {
+            String code = iterator.nextKey();
+            errorRates.put(code, ratesConfig.getDouble(code));
+          }
+        }
+        return new CircuitBreaker(
+          true,
+          config.hasKey(WINDOW_MS) ? (long) config.getDouble(WINDOW_MS) : 10000,
+          config.hasKey(MIN_REQUESTS) ? config.getInt(MIN_REQUESTS) : 10,
+          config.hasKey(OPEN_MS) ? (long) config.getDouble(OPEN_MS) : 30000,
+          errorRates);
+      default:
+        throw new IllegalArgumentException("circuitBreaker should be either a boolean or a map");
+    }
+  }
+
+  void setListener(@Nullable Listener listener) {
+    this.listener = listener;
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Runs the request unless the breaker is open, and counts its outcome
+   */
+  <T> T call(@NonNull Callable<T> request) throws Exception {
+    if (!enabled) {
+      return request.call();
+    }
+
+    boolean probe = admit(System.currentTimeMillis());
+
+    T result;
+    try {
+      result = request.call();
+    } catch (Exception e) {
+      onOutcome(probe, toErrorCode(e), System.currentTimeMillis());
+      throw e;
+    }
+    onOutcome(probe, null, System.currentTimeMillis());
+    return result;
+  }
+
+  /**
+   * @return whether the admitted request is the half-open probe
+   * @throws CircuitOpenException when the request may not go
+   */
+  private boolean admit(long now) throws CircuitOpenException {
+    State from;
+    synchronized (this) {
+      if (state == State.CLOSED) {
+        return false;
+      }
+      if (state == State.HALF_OPEN || probeInFlight || now - openedAt < openMs) {
+        throw new CircuitOpenException();
+      }
+
+      from = state;
+      state = State.HALF_OPEN;
+      probeInFlight = true;
+    }
+    notifyListener(from, State.HALF_OPEN, null);
+    return true;
+  }
+
+  private void onOutcome(boolean probe, @Nullable String errorCode, long now) {
+    boolean trips = errorCode != null && errorRates.containsKey(errorCode);
+
+    State from;
+    State to;
+    synchronized (this) {
+      from = state;
+      if (probe) {
+        probeInFlight = false;
+        if (trips) {
+          state = State.OPEN;
+          openedAt = now;
+        } else {
+          state = State.CLOSED;
+          clearWindow();
+        }
+      } else if (state == State.CLOSED) {
+        record(errorCode, now);
+        if (trips && isOverThreshold(errorCode, now)) {
+          state = State.OPEN;
+          openedAt = now;
+        }
+      }
+      // Outcomes of requests admitted before the breaker opened say nothing new
+      to = state;
+    }
+
+    if (from != to) {
+      notifyListener(from, to, errorCode);
+    }
+  }
+
+  private void record(@Nullable String errorCode, long now) {
+    int bucket = bucketFor(now);
+    bucketTotals[bucket]++;
+    if (errorCode != null) {
+      int[] counts = bucketErrors.get(errorCode);
+      if (counts == null) {
+        counts = new int[WINDOW_BUCKETS];
+        bucketErrors.put(errorCode, counts);
+      }
+      counts[bucket]++;
+    }
+  }
+
+  private boolean isOverThreshold(@NonNull String errorCode, long now) {
+    long epoch = now / bucketMs;
+    int total = 0;
+    int errors = 0;
+    int[] counts = bucketErrors.get(errorCode);
+    for (int i = 0; i < WINDOW_BUCKETS; i++) {
+      if (epoch - bucketEpochs[i] < WINDOW_BUCKETS) {
+        total += bucketTotals[i];
+        errors += counts == null ? 0 : counts[i];
+      }
+    }
+    return total >= minRequests && errors >= total * errorRates.get(errorCode);
+  }
+
+  private int bucketFor(long now) {
+    long epoch = now / bucketMs;
+    int bucket = (int) (epoch % WINDOW_BUCKETS);
+    if (bucketEpochs[bucket] != epoch) {
+      // The slot still holds counts from a previous turn of the window
+      bucketEpochs[bucket] = epoch;
+      bucketTotals[bucket] = 0;
+      for (int[] counts : bucketErrors.values()) {
+        counts[bucket] = 0;
+      }
+    }
+    return bucket;
+  }
+
+  private void clearWindow() {
+    for (int i = 0; i < WINDOW_BUCKETS; i++) {
+      bucketEpochs[i] = 0;
+      bucketTotals[i] = 0;
+    }
+    bucketErrors.clear();
+  }
+
+  private void notifyListener(State from, State to, @Nullable String errorCode) {
+    Listener listener = this.listener;
+    if (listener != null) {
+      listener.onStateChanged(from, to, errorCode);
+    }
+  }
+}
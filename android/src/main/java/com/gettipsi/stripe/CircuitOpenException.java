@@ -0,0 +1,12 @@
+package com.gettipsi.stripe;
+
+/**
+ * Thrown instead of making a request while the {@link CircuitBreaker} is open, reported to JS
+ * with the {@code circuitOpen} code.
+ */
+final class CircuitOpenException extends Exception {
+
+  CircuitOpenException() {
+    super("The Stripe API is unavailable, requests fail fast until it recovers");
+  }
+}
@@ -0,0 +1,12 @@
+package com.gettipsi.stripe;
+
+/**
+ * Thrown when the module's own rate limiter turns a request away, reported to JS with the
+ * same {@code rateLimit} code as a rate limit applied by the Stripe API.
+ */
+final class ClientRateLimitException extends Exception {
+
+  ClientRateLimitException() {
+    super("Too many requests, the client-side rate limit was reached");
+  }
+}
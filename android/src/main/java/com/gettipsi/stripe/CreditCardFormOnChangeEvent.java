@@ -4,19 +4,44 @@ import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.uimanager.events.Event;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
+import com.gettipsi.stripe.util.BinTable;
+import com.gettipsi.stripe.util.CardNumber;
 
 /**
  * Created by dmitriy on 11/17/16
+ *
+ * Holds the field values rather than a map, which is only built for the event that actually
+ * reaches JS: changes queued within one frame coalesce into the latest of them.
  */
 public class CreditCardFormOnChangeEvent extends Event<CreditCardFormOnChangeEvent> {
 
     private static final String EVENT_NAME = "topChange";
-    private final WritableMap params;
+    // All changes of a field are the same kind of event, only the latest one matters
+    private static final short COALESCING_KEY = 0;
+
+    private final String number;
+    private final BinTable.Bin bin;
+    private final boolean isNumberValid;
+    private final int expMonth;
+    private final int expYear;
+    private final String cvc;
     private final boolean isValid;
 
-    public CreditCardFormOnChangeEvent(int id, WritableMap params, boolean isValid) {
+    public CreditCardFormOnChangeEvent(int id,
+                                       CardNumber number,
+                                       BinTable.Bin bin,
+                                       int expMonth,
+                                       int expYear,
+                                       String cvc,
+                                       boolean isValid) {
         super(id);
-        this.params = params;
+        // The number changes as the customer types on, keep what it is now
+        this.number = number.toString();
+        this.bin = bin;
+        this.isNumberValid = bin != null && number.length() == bin.panLength && number.isLuhnValid();
+        this.expMonth = expMonth;
+        this.expYear = expYear;
+        this.cvc = cvc;
         this.isValid = isValid;
     }
 
@@ -25,14 +50,43 @@ public class CreditCardFormOnChangeEvent extends Event<CreditCardFormOnChangeEve
         return EVENT_NAME;
     }
 
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
+
+    @Override
+    public short getCoalescingKey() {
+        return COALESCING_KEY;
+    }
+
+    @Override
+    public CreditCardFormOnChangeEvent coalesce(CreditCardFormOnChangeEvent otherEvent) {
+        return getTimestampMs() >= otherEvent.getTimestampMs() ? this : otherEvent;
+    }
+
     @Override
     public void dispatch(RCTEventEmitter rctEventEmitter) {
         rctEventEmitter.receiveEvent(getViewTag(), getEventName(), serializeEventData());
     }
 
     private WritableMap serializeEventData() {
+        WritableMap params = Arguments.createMap();
+        params.putString("number", number);
+        params.putInt("expMonth", expMonth);
+        params.putInt("expYear", expYear);
+        params.putString("cvc", cvc);
+
         WritableMap eventData = Arguments.createMap();
         eventData.putBoolean("valid", isValid);
+        eventData.putString("brand", bin == null ? CardNumber.Brand.UNKNOWN.code : bin.brand.code);
+        eventData.putInt("numberLength", number.length());
+        eventData.putBoolean("numberValid", isNumberValid);
+        if (bin != null) {
+            eventData.putString("funding", bin.funding);
+            eventData.putInt("expectedNumberLength", bin.panLength);
+            eventData.putInt("cvcLength", bin.cvcLength);
+        }
         eventData.putMap("params", params);
         return eventData;
     }
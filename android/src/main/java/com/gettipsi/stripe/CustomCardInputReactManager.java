@@ -1,22 +1,24 @@
 package com.gettipsi.stripe;
 
+import android.content.Context;
+import android.os.SystemClock;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.util.Log;
-import android.util.Xml;
+import android.util.SparseArray;
+import android.view.View;
 import android.widget.EditText;
 import android.view.inputmethod.InputMethodManager;
 
 import com.devmarvel.creditcardentry.library.CreditCardForm;
-import com.facebook.react.bridge.Arguments;
-import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.uimanager.SimpleViewManager;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.UIManagerModule;
 import com.facebook.react.uimanager.annotations.ReactProp;
-
-import org.xmlpull.v1.XmlPullParser;
+import com.gettipsi.stripe.util.BinTable;
+import com.gettipsi.stripe.util.CardNumber;
 
 /**
  * Created by dmitriy on 11/15/16
@@ -26,38 +28,55 @@ public class CustomCardInputReactManager extends SimpleViewManager<CreditCardFor
 
   public static final String REACT_CLASS = "TPSCardField";
   private static final String TAG = CustomCardInputReactManager.class.getSimpleName();
-  private static final String NUMBER = "number";
-  private static final String EXP_MONTH = "expMonth";
-  private static final String EXP_YEAR = "expYear";
-  private static final String CCV = "cvc";
 
-  private ThemedReactContext reactContext;
-  private WritableMap currentParams;
+  /**
+   * What one card field has entered and how it reports changes. Views are only touched on
+   * the UI thread, so neither this nor the map holding it needs to be synchronized.
+   */
+  private static final class CardFieldState {
+    final CardNumber number = new CardNumber();
+    int month;
+    int year;
+    String ccv;
+
+    // Minimum time between two change events, the last change of a burst is sent when it ends
+    int changeThrottleMs;
+    // Whether change events are only sent when the form becomes valid or stops being valid
+    boolean changeOnValidityOnly;
+    // Set while props are written to the fields, whose changes JS already knows about
+    boolean applyingProps;
+    long lastEventAt;
+    Boolean lastEventValid;
+    // Sends the change held back by the throttle, null when none is
+    Runnable scheduledEvent;
+  }
 
-  private String currentNumber;
-  private int currentMonth;
-  private int currentYear;
-  private String currentCCV;
+  // Keyed by the tag of the view the state belongs to
+  private final SparseArray<CardFieldState> states = new SparseArray<>();
+  private final CardFormPool pool;
 
   @Override
   public String getName() {
     return REACT_CLASS;
   }
 
+  CustomCardInputReactManager(CardFormPool pool) {
+    this.pool = pool;
+    pool.setFactory(new CardFormPool.Factory() {
+      @Override
+      public CreditCardForm create(Context context, AttributeSet attributes) {
+        return createForm(context, attributes);
+      }
+    });
+  }
+
   @Override
   protected CreditCardForm createViewInstance(final ThemedReactContext reactContext) {
-    XmlPullParser parser = reactContext.getResources().getXml(R.xml.stub_material);
-    try {
-      parser.next();
-      parser.nextTag();
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-
-    AttributeSet attr = Xml.asAttributeSet(parser);
-    final CreditCardForm creditCardForm = new CreditCardForm(reactContext, attr);
-    setListeners(creditCardForm);
-    this.reactContext = reactContext;
+    long startedAt = System.nanoTime();
+    CreditCardForm pooled = pool.acquire(reactContext);
+    final CreditCardForm creditCardForm = pooled != null
+      ? pooled
+      : createForm(reactContext, pool.attributes(reactContext));
     creditCardForm.post(new Runnable() {
       @Override
       public void run() {
@@ -66,6 +85,26 @@ public class CustomCardInputReactManager extends SimpleViewManager<CreditCardFor
         creditCardForm.focusCreditCard();
       }
     });
+    pool.recordMount(pooled != null, System.nanoTime() - startedAt);
+    return creditCardForm;
+  }
+
+  @Override
+  public void onDropViewInstance(CreditCardForm view) {
+    super.onDropViewInstance(view);
+
+    CardFieldState state = states.get(view.getId());
+    if (state != null) {
+      if (state.scheduledEvent != null) {
+        view.removeCallbacks(state.scheduledEvent);
+      }
+      states.remove(view.getId());
+    }
+  }
+
+  private CreditCardForm createForm(Context context, AttributeSet attributes) {
+    CreditCardForm creditCardForm = new CreditCardForm(context, attributes);
+    setListeners(creditCardForm);
     return creditCardForm;
   }
 
@@ -82,17 +121,45 @@ public class CustomCardInputReactManager extends SimpleViewManager<CreditCardFor
 
   @ReactProp(name = "cardNumber")
   public void setCardNumber(CreditCardForm view, String cardNumber) {
-    view.setCardNumber(cardNumber, true);
+    CardFieldState state = stateOf(view);
+    state.applyingProps = true;
+    try {
+      view.setCardNumber(cardNumber, true);
+    } finally {
+      state.applyingProps = false;
+    }
   }
 
   @ReactProp(name = "expDate")
   public void setExpDate(CreditCardForm view, String expDate) {
-    view.setExpDate(expDate, true);
+    CardFieldState state = stateOf(view);
+    state.applyingProps = true;
+    try {
+      view.setExpDate(expDate, true);
+    } finally {
+      state.applyingProps = false;
+    }
   }
 
   @ReactProp(name = "securityCode")
   public void setSecurityCode(CreditCardForm view, String securityCode) {
-    view.setSecurityCode(securityCode, true);
+    CardFieldState state = stateOf(view);
+    state.applyingProps = true;
+    try {
+      view.setSecurityCode(securityCode, true);
+    } finally {
+      state.applyingProps = false;
+    }
+  }
+
+  @ReactProp(name = "changeThrottleMs")
+  public void setChangeThrottleMs(CreditCardForm view, int changeThrottleMs) {
+    stateOf(view).changeThrottleMs = Math.max(0, changeThrottleMs);
+  }
+
+  @ReactProp(name = "changeOnValidityOnly")
+  public void setChangeOnValidityOnly(CreditCardForm view, boolean changeOnValidityOnly) {
+    stateOf(view).changeOnValidityOnly = changeOnValidityOnly;
   }
 
   @ReactProp(name = "numberPlaceholder")
@@ -124,8 +191,7 @@ public class CustomCardInputReactManager extends SimpleViewManager<CreditCardFor
 
       @Override
       public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
-        Log.d(TAG, "onTextChanged: cardNumber = "+charSequence);
-        currentNumber = charSequence.toString().replaceAll(" ", "");
+        stateOf(view).number.update(charSequence);
         postEvent(view);
       }
 
@@ -141,18 +207,11 @@ public class CustomCardInputReactManager extends SimpleViewManager<CreditCardFor
 
       @Override
       public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
-        Log.d(TAG, "onTextChanged: EXP_YEAR = "+charSequence);
-        try {
-          currentMonth = view.getCreditCard().getExpMonth();
-        }catch (Exception e){
-          if (charSequence.length() == 0)
-            currentMonth = 0;
-        }
-        try {
-          currentYear = view.getCreditCard().getExpYear();
-        }catch (Exception e){
-          currentYear = 0;
-        }
+        CardFieldState state = stateOf(view);
+        int month = expiryDigits(charSequence, 0);
+        int year = expiryDigits(charSequence, 2);
+        state.month = month < 0 ? 0 : month;
+        state.year = year < 0 ? 0 : 2000 + year;
         postEvent(view);
       }
 
@@ -168,8 +227,7 @@ public class CustomCardInputReactManager extends SimpleViewManager<CreditCardFor
 
       @Override
       public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
-        Log.d(TAG, "onTextChanged: CCV = "+charSequence);
-        currentCCV = charSequence.toString();
+        stateOf(view).ccv = charSequence.toString();
         postEvent(view);
       }
 
@@ -179,15 +237,77 @@ public class CustomCardInputReactManager extends SimpleViewManager<CreditCardFor
     });
   }
 
-  private void postEvent(CreditCardForm view){
-    currentParams = Arguments.createMap();
-    currentParams.putString(NUMBER, currentNumber);
-    currentParams.putInt(EXP_MONTH, currentMonth);
-    currentParams.putInt(EXP_YEAR, currentYear);
-    currentParams.putString(CCV, currentCCV);
-    reactContext.getNativeModule(UIManagerModule.class)
+  private CardFieldState stateOf(CreditCardForm view) {
+    CardFieldState state = states.get(view.getId());
+    if (state == null) {
+      state = new CardFieldState();
+      states.put(view.getId(), state);
+    }
+    return state;
+  }
+
+  private void postEvent(final CreditCardForm view){
+    if (view.getId() == View.NO_ID) {
+      // A pooled form being reset
+      return;
+    }
+    final CardFieldState state = stateOf(view);
+    if (state.applyingProps) {
+      return;
+    }
+
+    boolean valid = view.isCreditCardValid();
+    if (state.changeOnValidityOnly) {
+      if (state.lastEventValid == null || state.lastEventValid != valid) {
+        dispatchEvent(view, state, valid);
+      }
+      return;
+    }
+
+    long wait = state.lastEventAt + state.changeThrottleMs - SystemClock.uptimeMillis();
+    if (state.changeThrottleMs > 0 && wait > 0) {
+      if (state.scheduledEvent == null) {
+        state.scheduledEvent = new Runnable() {
+          @Override
+          public void run() {
+            state.scheduledEvent = null;
+            dispatchEvent(view, state, view.isCreditCardValid());
+          }
+        };
+        view.postDelayed(state.scheduledEvent, wait);
+      }
+      return;
+    }
+
+    dispatchEvent(view, state, valid);
+  }
+
+  private void dispatchEvent(CreditCardForm view, CardFieldState state, boolean valid) {
+    state.lastEventAt = SystemClock.uptimeMillis();
+    state.lastEventValid = valid;
+    ((ReactContext) view.getContext()).getNativeModule(UIManagerModule.class)
       .getEventDispatcher().dispatchEvent(
-      new CreditCardFormOnChangeEvent(view.getId(), currentParams, view.isCreditCardValid()));
+      new CreditCardFormOnChangeEvent(view.getId(), state.number, BinTable.get(view.getContext()).lookup(state.number),
+        state.month, state.year, state.ccv, valid));
+  }
+
+  /**
+   * Value of the two digits of an {@code MM/YY} expiry date that start at the given digit
+   * index, or -1 when they have not been entered yet
+   */
+  private static int expiryDigits(CharSequence text, int from) {
+    int value = 0;
+    int found = 0;
+    for (int i = 0; i < text.length() && found < from + 2; i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (found >= from) {
+          value = value * 10 + (c - '0');
+        }
+        found++;
+      }
+    }
+    return found == from + 2 ? value : -1;
   }
 
   private void updateView(CreditCardForm view){
@@ -5,8 +5,10 @@ import android.support.annotation.NonNull;
 import com.facebook.react.bridge.ReadableMap;
 import com.gettipsi.stripe.util.ArgCheck;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by ngoriachev on 30/07/2018.
@@ -15,6 +17,8 @@ import java.util.Map;
 public final class Errors {
 
   private static final Map<String, String> exceptionNameToErrorCode = new HashMap<>();
+  // Error code resolved for each exception class seen so far
+  private static final Map<Class<?>, String> classToErrorCode = new ConcurrentHashMap<>();
 
   public static final String CANCELLED = "cancelled";
   public static final String FAILED = "failed";
@@ -29,28 +33,76 @@ public final class Errors {
     exceptionNameToErrorCode.put("PermissionException", "permission");
     exceptionNameToErrorCode.put("InvalidRequestException", "invalidRequest");
     exceptionNameToErrorCode.put("RateLimitException", "rateLimit");
+    exceptionNameToErrorCode.put("ClientRateLimitException", "rateLimit");
     exceptionNameToErrorCode.put("APIException", "api");
+    exceptionNameToErrorCode.put("CircuitOpenException", "circuitOpen");
+    exceptionNameToErrorCode.put("InvalidParamsException", "invalidParams");
   }
 
+  /**
+   * Error code of the exception's class or of its closest superclass that has one, so that
+   * subclasses the SDK adds later still map to its generic codes. Classes without any fall
+   * back to their simple name.
+   */
   public static String toErrorCode(@NonNull Exception exception) {
     ArgCheck.nonNull(exception);
-    String simpleName = exception.getClass().getSimpleName();
-    String errorCode = exceptionNameToErrorCode.get(simpleName);
+    Class<?> exceptionClass = exception.getClass();
+    String errorCode = classToErrorCode.get(exceptionClass);
 
     if (errorCode == null) {
-      errorCode = simpleName;
+      errorCode = resolveErrorCode(exceptionClass);
+      classToErrorCode.put(exceptionClass, errorCode);
     }
-//    ArgCheck.nonNull(errorCode, simpleName);
 
     return errorCode;
   }
 
-  static String getErrorCode(@NonNull ReadableMap errorCodes, @NonNull String errorKey) {
-    return errorCodes.getMap(errorKey).getString("errorCode");
+  private static String resolveErrorCode(Class<?> exceptionClass) {
+    for (Class<?> c = exceptionClass; c != null; c = c.getSuperclass()) {
+      String errorCode = exceptionNameToErrorCode.get(c.getSimpleName());
+      if (errorCode != null) {
+        return errorCode;
+      }
+    }
+    return exceptionClass.getSimpleName();
+  }
+
+  /**
+   * Error code and description of one entry of the {@code errorCodes} passed to init
+   */
+  static final class ErrorCode {
+    final String errorCode;
+    final String description;
+
+    private ErrorCode(String errorCode, String description) {
+      this.errorCode = errorCode;
+      this.description = description;
+    }
+  }
+
+  /**
+   * Copies the {@code errorCodes} passed to init out of the bridge, so that rejecting a call
+   * does not read them across it every time
+   */
+  @SuppressWarnings("unchecked")
+  static Map<String, ErrorCode> snapshot(@NonNull ReadableMap errorCodes) {
+    ArgCheck.nonNull(errorCodes);
+
+    Map<String, ErrorCode> snapshot = new HashMap<>();
+    for (Map.Entry<String, Object> entry : errorCodes.toHashMap().entrySet()) {
+      Map<String, Object> value = (Map<String, Object>) entry.getValue();
+      snapshot.put(entry.getKey(),
+        new ErrorCode((String) value.get("errorCode"), (String) value.get("description")));
+    }
+    return Collections.unmodifiableMap(snapshot);
+  }
+
+  static String getErrorCode(@NonNull Map<String, ErrorCode> errorCodes, @NonNull String errorKey) {
+    return ArgCheck.nonNull(errorCodes.get(errorKey), errorKey).errorCode;
   }
 
-  static String getDescription(@NonNull ReadableMap errorCodes, @NonNull String errorKey) {
-    return errorCodes.getMap(errorKey).getString("description");
+  static String getDescription(@NonNull Map<String, ErrorCode> errorCodes, @NonNull String errorKey) {
+    return ArgCheck.nonNull(errorCodes.get(errorKey), errorKey).description;
   }
 
 }
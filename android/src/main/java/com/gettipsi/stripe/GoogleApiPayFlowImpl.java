@@ -31,10 +31,8 @@ import java.util.Arrays;
 import java.util.Collection;
 
 import static com.gettipsi.stripe.Errors.toErrorCode;
-import static com.gettipsi.stripe.util.Converters.convertTokenToWritableMap;
 import static com.gettipsi.stripe.util.Converters.getAllowedShippingCountryCodes;
 import static com.gettipsi.stripe.util.Converters.getBillingAddress;
-import static com.gettipsi.stripe.util.Converters.putExtraToTokenMap;
 import static com.gettipsi.stripe.util.PayParams.CURRENCY_CODE;
 import static com.gettipsi.stripe.util.PayParams.BILLING_ADDRESS_REQUIRED;
 import static com.gettipsi.stripe.util.PayParams.SHIPPING_ADDRESS_REQUIRED;
@@ -49,13 +47,11 @@ import static com.gettipsi.stripe.util.PayParams.TOTAL_PRICE;
 public final class GoogleApiPayFlowImpl extends PayFlow {
 
   private static final String TAG = GoogleApiPayFlowImpl.class.getSimpleName();
-  private static final int LOAD_PAYMENT_DATA_REQUEST_CODE = 65534;
 
   private PaymentsClient mPaymentsClient;
-  private Promise payPromise;
 
-  public GoogleApiPayFlowImpl(@NonNull Fun0<Activity> activityProvider) {
-    super(activityProvider);
+  GoogleApiPayFlowImpl(@NonNull Fun0<Activity> activityProvider, @NonNull ActivityResultDispatcher activityResults) {
+    super(activityProvider, activityResults);
   }
 
   private PaymentsClient createPaymentsClient(@NonNull Activity activity) {
@@ -166,21 +162,42 @@ public final class GoogleApiPayFlowImpl extends PayFlow {
     return builder.build();
   }
 
-  private void startPaymentRequest(@NonNull Activity activity, @NonNull PaymentDataRequest request) {
+  private void startPaymentRequest(@NonNull Activity activity,
+                                   @NonNull PaymentDataRequest request,
+                                   @NonNull final ResultFormat format,
+                                   @NonNull final Promise promise) {
     ArgCheck.nonNull(activity);
     ArgCheck.nonNull(request);
 
     mPaymentsClient = createPaymentsClient(activity);
 
+    int requestCode = activityResults.register(new ActivityResultDispatcher.PendingHandler() {
+      @Override
+      public void onActivityResult(Activity activity, int resultCode, Intent data) {
+        onPaymentDataResult(resultCode, data, format, promise);
+      }
+
+      @Override
+      public void onTimeout() {
+        promise.reject(
+          getErrorCode("timeout"),
+          getErrorDescription("timeout")
+        );
+      }
+    }, ActivityResultDispatcher.DEFAULT_TIMEOUT_MS);
+
     AutoResolveHelper.resolveTask(
       mPaymentsClient.loadPaymentData(request),
       activity,
-      LOAD_PAYMENT_DATA_REQUEST_CODE);
+      requestCode);
   }
 
   @Override
-  public void paymentRequestWithAndroidPay(@NonNull ReadableMap payParams, @NonNull Promise promise) {
+  public void paymentRequestWithAndroidPay(@NonNull ReadableMap payParams,
+                                          @NonNull ResultFormat format,
+                                          @NonNull Promise promise) {
     ArgCheck.nonNull(payParams);
+    ArgCheck.nonNull(format);
     ArgCheck.nonNull(promise);
 
     Activity activity = activityProvider.call();
@@ -192,8 +209,7 @@ public final class GoogleApiPayFlowImpl extends PayFlow {
       return;
     }
 
-    this.payPromise = promise;
-    startPaymentRequest(activity, createPaymentDataRequest(payParams));
+    startPaymentRequest(activity, createPaymentDataRequest(payParams), format, promise);
   }
 
   @Override
@@ -218,57 +234,56 @@ public final class GoogleApiPayFlowImpl extends PayFlow {
     isReadyToPay(activity, isExistingPaymentMethodRequired, promise);
   }
 
-  public boolean onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
-    if (payPromise == null) {
-      return false;
+  @Override
+  public void prewarm() {
+    Activity activity = activityProvider.call();
+    if (activity == null || !hasEnvironment() || mPaymentsClient != null) {
+      return;
     }
 
-    switch (requestCode) {
-      case LOAD_PAYMENT_DATA_REQUEST_CODE:
-        switch (resultCode) {
-          case Activity.RESULT_OK:
-            PaymentData paymentData = PaymentData.getFromIntent(data);
-            ArgCheck.nonNull(paymentData);
-            String tokenJson = paymentData.getPaymentMethodToken().getToken();
-            Token token = Token.fromString(tokenJson);
-            if (token == null) {
-              payPromise.reject(
-                getErrorCode("parseResponse"),
-                getErrorDescription("parseResponse")
-              );
-            } else {
-              payPromise.resolve(putExtraToTokenMap(
-                convertTokenToWritableMap(token),
-                getBillingAddress(paymentData),
-                paymentData.getShippingAddress(),
-                paymentData.getEmail()));
-            }
-            break;
-          case Activity.RESULT_CANCELED:
-            payPromise.reject(
-              getErrorCode("purchaseCancelled"),
-              getErrorDescription("purchaseCancelled")
-            );
-            break;
-          case AutoResolveHelper.RESULT_ERROR:
-            Status status = AutoResolveHelper.getStatusFromIntent(data);
-            // Log the status for debugging.
-            // Generally, there is no need to show an error to
-            // the user as the Google Pay API will do that.
-            payPromise.reject(
-              getErrorCode("stripe"),
-              status.getStatusMessage()
-            );
-            break;
-
-          default:
-            // Do nothing.
+    mPaymentsClient = createPaymentsClient(activity);
+  }
+
+  private void onPaymentDataResult(int resultCode, Intent data, @NonNull ResultFormat format, @NonNull Promise promise) {
+    switch (resultCode) {
+      case Activity.RESULT_OK:
+        PaymentData paymentData = PaymentData.getFromIntent(data);
+        ArgCheck.nonNull(paymentData);
+        String tokenJson = paymentData.getPaymentMethodToken().getToken();
+        Token token = Token.fromString(tokenJson);
+        if (token == null) {
+          promise.reject(
+            getErrorCode("parseResponse"),
+            getErrorDescription("parseResponse")
+          );
+        } else {
+          promise.resolve(format.androidPayToken(
+            token,
+            getBillingAddress(paymentData),
+            paymentData.getShippingAddress(),
+            paymentData.getEmail()));
         }
-        payPromise = null;
-        return true;
+        break;
+      case Activity.RESULT_CANCELED:
+        promise.reject(
+          getErrorCode("purchaseCancelled"),
+          getErrorDescription("purchaseCancelled")
+        );
+        break;
+      case AutoResolveHelper.RESULT_ERROR:
+        Status status = AutoResolveHelper.getStatusFromIntent(data);
+        // Log the status for debugging.
+        // Generally, there is no need to show an error to
+        // the user as the Google Pay API will do that.
+        promise.reject(
+          getErrorCode("stripe"),
+          status.getStatusMessage()
+        );
+        break;
+
+      default:
+        // Do nothing.
     }
-
-    return false;
   }
 
 }
@@ -11,6 +11,7 @@ import android.support.annotation.Nullable;
  */
 public class OpenBrowserActivity extends Activity {
   final static String EXTRA_URL = "url";
+  final static String EXTRA_SOURCE_ID = "sourceId";
 
   private String url;
   private boolean shouldFinish = true;
@@ -18,6 +19,25 @@ public class OpenBrowserActivity extends Activity {
   @Override
   protected void onCreate(@Nullable Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
+    openBrowser();
+  }
+
+  /**
+   * Another redirect started while this activity was on top, it owns the activity from now on.
+   * The one it replaces is cancelled, since coming back here no longer settles it.
+   */
+  @Override
+  protected void onNewIntent(Intent intent) {
+    super.onNewIntent(intent);
+    String replacedSourceId = getIntent().getStringExtra(EXTRA_SOURCE_ID);
+    setIntent(intent);
+    if (replacedSourceId != null && !replacedSourceId.equals(intent.getStringExtra(EXTRA_SOURCE_ID))) {
+      StripeModule.getInstance().cancelRedirect(replacedSourceId);
+    }
+    openBrowser();
+  }
+
+  private void openBrowser() {
     shouldFinish = false;
 
     url = getIntent().getStringExtra(EXTRA_URL);
@@ -31,7 +51,7 @@ public class OpenBrowserActivity extends Activity {
   protected void onResume() {
     super.onResume();
     if (shouldFinish) {
-      StripeModule.getInstance().processRedirect(null);
+      StripeModule.getInstance().cancelRedirect(getIntent().getStringExtra(EXTRA_SOURCE_ID));
       finish();
     }
     shouldFinish = true;
@@ -1,7 +1,6 @@
 package com.gettipsi.stripe;
 
 import android.app.Activity;
-import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
@@ -13,20 +12,24 @@ import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.wallet.WalletConstants;
 
+import java.util.Map;
+
 public abstract class PayFlow {
 
   protected final @NonNull Fun0<Activity> activityProvider;
+  protected final @NonNull ActivityResultDispatcher activityResults;
   private String publishableKey; // invalid value by default
   private int environment; // invalid value by default
-  private ReadableMap errorCodes; // invalid value by default, set in runtime
+  private Map<String, Errors.ErrorCode> errorCodes; // invalid value by default, set in runtime
 
-  public PayFlow(@NonNull Fun0<Activity> activityProvider) {
+  PayFlow(@NonNull Fun0<Activity> activityProvider, @NonNull ActivityResultDispatcher activityResults) {
     ArgCheck.nonNull(activityProvider);
     this.activityProvider = activityProvider;
+    this.activityResults = ArgCheck.nonNull(activityResults);
   }
 
-  public static PayFlow create(Fun0<Activity> activityProvider) {
-    return new GoogleApiPayFlowImpl(activityProvider);
+  static PayFlow create(Fun0<Activity> activityProvider, ActivityResultDispatcher activityResults) {
+    return new GoogleApiPayFlowImpl(activityProvider, activityResults);
   }
 
   private static boolean isValidEnvironment(int environment) {
@@ -39,6 +42,10 @@ public abstract class PayFlow {
       isValidEnvironment(newEnvironment);
   }
 
+  protected boolean hasEnvironment() {
+    return isValidEnvironment(environment);
+  }
+
   protected int getEnvironment() {
     ArgCheck.isTrue(isValidEnvironment(environment));
 
@@ -60,13 +67,13 @@ public abstract class PayFlow {
     this.publishableKey = ArgCheck.notEmptyString(publishableKey);
   }
 
-  public void setErrorCodes(ReadableMap errorCodes) {
+  public void setErrorCodes(Map<String, Errors.ErrorCode> errorCodes) {
     if (this.errorCodes == null) {
       this.errorCodes = errorCodes;
     }
   }
 
-  protected ReadableMap getErrorCodes() {
+  protected Map<String, Errors.ErrorCode> getErrorCodes() {
     return ArgCheck.nonNull(errorCodes);
   }
 
@@ -78,11 +85,15 @@ public abstract class PayFlow {
     return Errors.getDescription(getErrorCodes(), key);
   }
 
-  abstract void paymentRequestWithAndroidPay(final ReadableMap payParams, final Promise promise);
+  abstract void paymentRequestWithAndroidPay(final ReadableMap payParams, final ResultFormat format, final Promise promise);
 
   abstract void deviceSupportsAndroidPay(boolean isExistingPaymentMethodRequired, final Promise promise);
 
-  abstract boolean onActivityResult(Activity activity, int requestCode, int resultCode, Intent data);
+  /**
+   * Creates whatever the flow needs lazily, so the first payment request does not pay for it.
+   * Must be called on the main thread.
+   */
+  abstract void prewarm();
 
   public static boolean isPlayServicesAvailable(@NonNull Activity activity) {
     ArgCheck.nonNull(activity);
@@ -0,0 +1,117 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.gettipsi.stripe.util.Action;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.PriorityScheduler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Promises of the intent confirmations that wait for the Stripe SDK's activity result. The
+ * SDK uses one request code for all payment (or setup) confirmations, so results are matched
+ * to their call by the intent's client secret, and resolved in the format their call asked for.
+ * Timeouts fire on the scheduler's timer thread and are cancelled once the result arrives.
+ */
+final class PendingConfirmations {
+
+  private final PriorityScheduler scheduler;
+  private final Action<TrackedPromise> onTimeout;
+  private final Map<String, Confirmation> byClientSecret = new LinkedHashMap<>();
+
+  PendingConfirmations(@NonNull PriorityScheduler scheduler, @NonNull Action<TrackedPromise> onTimeout) {
+    this.scheduler = ArgCheck.nonNull(scheduler);
+    this.onTimeout = ArgCheck.nonNull(onTimeout);
+  }
+
+  /**
+   * @return the promise of an earlier confirmation of the same intent, which no longer gets
+   * a result of its own
+   */
+  @Nullable
+  TrackedPromise add(@NonNull final String clientSecret,
+                     @NonNull final TrackedPromise promise,
+                     @NonNull ResultFormat format,
+                     long timeoutMs) {
+    ArgCheck.notEmptyString(clientSecret);
+    ArgCheck.nonNull(promise);
+
+    final Confirmation entry = new Confirmation(promise, ArgCheck.nonNull(format));
+    Confirmation previous;
+    synchronized (byClientSecret) {
+      previous = byClientSecret.remove(clientSecret);
+      byClientSecret.put(clientSecret, entry);
+      entry.timeout = scheduler.scheduleOnTimer(new Runnable() {
+        @Override
+        public void run() {
+          if (remove(clientSecret, entry)) {
+            onTimeout.call(promise);
+          }
+        }
+      }, timeoutMs);
+    }
+    previous = settle(previous);
+    return previous == null ? null : previous.promise;
+  }
+
+  @Nullable
+  Confirmation take(@Nullable String clientSecret) {
+    synchronized (byClientSecret) {
+      return settle(byClientSecret.remove(clientSecret));
+    }
+  }
+
+  /**
+   * The SDK reports some failures without the intent. The confirmation started last owns the
+   * activity on top of the stack, so it is the one the result belongs to.
+   */
+  @Nullable
+  Confirmation takeLatest() {
+    synchronized (byClientSecret) {
+      String latest = null;
+      for (String clientSecret : byClientSecret.keySet()) {
+        latest = clientSecret;
+      }
+      return latest == null ? null : settle(byClientSecret.remove(latest));
+    }
+  }
+
+  int size() {
+    synchronized (byClientSecret) {
+      return byClientSecret.size();
+    }
+  }
+
+  private boolean remove(String clientSecret, Confirmation entry) {
+    synchronized (byClientSecret) {
+      if (byClientSecret.get(clientSecret) != entry) {
+        return false;
+      }
+      byClientSecret.remove(clientSecret);
+      return true;
+    }
+  }
+
+  @Nullable
+  private static Confirmation settle(@Nullable Confirmation entry) {
+    if (entry != null) {
+      entry.timeout.cancel(false);
+    }
+    return entry;
+  }
+
+  static final class Confirmation {
+    final TrackedPromise promise;
+    final ResultFormat format;
+    private ScheduledFuture<?> timeout;
+
+    private Confirmation(TrackedPromise promise, ResultFormat format) {
+      this.promise = promise;
+      this.format = format;
+    }
+  }
+}
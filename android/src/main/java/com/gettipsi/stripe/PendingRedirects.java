@@ -0,0 +1,81 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.gettipsi.stripe.util.ArgCheck;
+import com.stripe.android.Stripe;
+import com.stripe.android.model.Source;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Redirect sources whose customer has been sent to the browser, indexed both by source id and
+ * by client secret, so that any number of them can be in flight and a redirect back to the app
+ * finds its call without a scan.
+ */
+final class PendingRedirects {
+
+  static final class Redirect {
+    final Source source;
+    final Stripe stripe;
+    final TrackedPromise promise;
+    final ResultFormat format;
+
+    Redirect(@NonNull Source source, @NonNull Stripe stripe, @NonNull TrackedPromise promise, @NonNull ResultFormat format) {
+      this.source = ArgCheck.nonNull(source);
+      this.stripe = ArgCheck.nonNull(stripe);
+      this.promise = ArgCheck.nonNull(promise);
+      this.format = ArgCheck.nonNull(format);
+    }
+  }
+
+  private final Map<String, Redirect> bySourceId = new HashMap<>();
+  private final Map<String, Redirect> byClientSecret = new HashMap<>();
+
+  /**
+   * @return an earlier redirect of the same source, which no longer gets a result of its own
+   */
+  @Nullable
+  synchronized Redirect add(@NonNull Redirect redirect) {
+    ArgCheck.nonNull(redirect);
+
+    Redirect previous = bySourceId.get(redirect.source.getId());
+    if (previous == null) {
+      previous = byClientSecret.get(redirect.source.getClientSecret());
+    }
+    remove(previous);
+
+    bySourceId.put(redirect.source.getId(), redirect);
+    byClientSecret.put(redirect.source.getClientSecret(), redirect);
+    return previous;
+  }
+
+  @Nullable
+  synchronized Redirect getBySourceId(@Nullable String sourceId) {
+    return bySourceId.get(sourceId);
+  }
+
+  @Nullable
+  synchronized Redirect getByClientSecret(@Nullable String clientSecret) {
+    return byClientSecret.get(clientSecret);
+  }
+
+  /**
+   * @return true if the redirect was still pending, so the caller is the one to settle it
+   */
+  synchronized boolean remove(@Nullable Redirect redirect) {
+    if (redirect == null || bySourceId.get(redirect.source.getId()) != redirect) {
+      return false;
+    }
+
+    bySourceId.remove(redirect.source.getId());
+    byClientSecret.remove(redirect.source.getClientSecret());
+    return true;
+  }
+
+  synchronized int size() {
+    return bySourceId.size();
+  }
+}
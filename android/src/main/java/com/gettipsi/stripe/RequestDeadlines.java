@@ -0,0 +1,132 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.gettipsi.stripe.util.Action;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.LatencyEstimator;
+import com.gettipsi.stripe.util.PriorityScheduler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+
+import static com.gettipsi.stripe.util.Converters.getBooleanOrNull;
+import static com.gettipsi.stripe.util.Converters.getStringOrNull;
+
+/**
+ * Deadlines and cancellation of the module's calls, driven by three optional keys of the
+ * call options:
+ * <ul>
+ *   <li>{@code timeoutMs}: the call is rejected once it has been running that long</li>
+ *   <li>{@code requestId}: lets JS reject the call early through {@link #cancel}</li>
+ *   <li>{@code adaptiveTimeout}: derives the deadline from the smoothed latency of the
+ *   method's earlier calls, capped by {@code timeoutMs} when that is given too</li>
+ * </ul>
+ * Anything the call produces after it has been rejected is dropped by its {@link TrackedPromise}.
+ */
+final class RequestDeadlines {
+
+  static final String TIMEOUT_MS = "timeoutMs";
+  static final String REQUEST_ID = "requestId";
+  static final String ADAPTIVE_TIMEOUT = "adaptiveTimeout";
+
+  /** Option keys that do not take part in what the call does */
+  static final Set<String> KEYS = Collections.unmodifiableSet(
+    new HashSet<>(Arrays.asList(TIMEOUT_MS, REQUEST_ID, ADAPTIVE_TIMEOUT)));
+
+  static final int MIN_ADAPTIVE_SAMPLES = 5;
+  static final long MIN_ADAPTIVE_TIMEOUT_MS = 2000;
+  static final long MAX_ADAPTIVE_TIMEOUT_MS = 60000;
+
+  private final PriorityScheduler scheduler;
+  private final StripeMetrics metrics;
+  private final Action<TrackedPromise> onTimeout;
+  private final Action<TrackedPromise> onCancel;
+  private final ConcurrentMap<String, TrackedPromise> byRequestId = new ConcurrentHashMap<>();
+  private volatile long defaultTimeoutMs;
+
+  RequestDeadlines(@NonNull PriorityScheduler scheduler,
+                   @NonNull StripeMetrics metrics,
+                   @NonNull Action<TrackedPromise> onTimeout,
+                   @NonNull Action<TrackedPromise> onCancel) {
+    this.scheduler = ArgCheck.nonNull(scheduler);
+    this.metrics = ArgCheck.nonNull(metrics);
+    this.onTimeout = ArgCheck.nonNull(onTimeout);
+    this.onCancel = ArgCheck.nonNull(onCancel);
+  }
+
+  /**
+   * Timeout of the calls that do not pass their own, 0 for none. Calls that wait for the
+   * user are never timed out by default.
+   */
+  void setDefaultTimeoutMs(long defaultTimeoutMs) {
+    this.defaultTimeoutMs = Math.max(0, defaultTimeoutMs);
+  }
+
+  void arm(@NonNull final TrackedPromise promise, @Nullable ReadableMap options, boolean interactive) {
+    ArgCheck.nonNull(promise);
+
+    final String requestId = options == null ? null : getStringOrNull(options, REQUEST_ID);
+    if (requestId != null) {
+      byRequestId.put(requestId, promise);
+      promise.onSettled(new Runnable() {
+        @Override
+        public void run() {
+          byRequestId.remove(requestId, promise);
+        }
+      });
+    }
+
+    long timeoutMs = timeoutFor(promise.getMethod(), options, interactive);
+    if (timeoutMs > 0) {
+      final ScheduledFuture<?> timer = scheduler.scheduleOnTimer(new Runnable() {
+        @Override
+        public void run() {
+          onTimeout.call(promise);
+        }
+      }, timeoutMs);
+      promise.onSettled(new Runnable() {
+        @Override
+        public void run() {
+          timer.cancel(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * @return true if a pending call with the id was found and rejected
+   */
+  boolean cancel(@Nullable String requestId) {
+    TrackedPromise promise = requestId == null ? null : byRequestId.remove(requestId);
+    if (promise == null) {
+      return false;
+    }
+
+    onCancel.call(promise);
+    return true;
+  }
+
+  private long timeoutFor(@NonNull String method, @Nullable ReadableMap options, boolean interactive) {
+    long timeoutMs = interactive ? 0 : defaultTimeoutMs;
+    if (options != null && options.hasKey(TIMEOUT_MS)) {
+      timeoutMs = Math.max(0, (long) options.getDouble(TIMEOUT_MS));
+    }
+
+    if (options != null && getBooleanOrNull(options, ADAPTIVE_TIMEOUT, false)) {
+      LatencyEstimator latency = metrics.forMethod(method).getLatencyEstimator();
+      if (latency.getSamples() >= MIN_ADAPTIVE_SAMPLES) {
+        long cap = timeoutMs > 0 ? timeoutMs : MAX_ADAPTIVE_TIMEOUT_MS;
+        return Math.min(cap, Math.max(MIN_ADAPTIVE_TIMEOUT_MS, latency.getTimeoutMs()));
+      }
+    }
+    return timeoutMs;
+  }
+}
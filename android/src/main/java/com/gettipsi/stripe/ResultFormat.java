@@ -0,0 +1,146 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.Converters;
+import com.gettipsi.stripe.util.FieldMask;
+import com.gettipsi.stripe.util.JsonSink;
+import com.gettipsi.stripe.util.MapSink;
+import com.gettipsi.stripe.util.MaskedSink;
+import com.gettipsi.stripe.util.WritableMapSink;
+import com.google.android.gms.identity.intents.model.UserAddress;
+import com.stripe.android.PaymentIntentResult;
+import com.stripe.android.SetupIntentResult;
+import com.stripe.android.model.PaymentIntent;
+import com.stripe.android.model.PaymentMethod;
+import com.stripe.android.model.SetupIntent;
+import com.stripe.android.model.Source;
+import com.stripe.android.model.Token;
+
+import static com.gettipsi.stripe.util.Converters.getStringOrNull;
+
+/**
+ * How a call hands its Stripe object to JS, chosen by two call options:
+ * <ul>
+ *   <li>{@code resultFormat}: {@code map}, the default, builds a {@code WritableMap},
+ *   {@code json} serializes the same schema into one string that the JS layer parses</li>
+ *   <li>{@code fields}: keys to keep, see {@link FieldMask}; branches left out are not built</li>
+ * </ul>
+ *
+ * Public for the card form dialog, which resolves its call itself.
+ */
+public final class ResultFormat {
+
+  static final String KEY = "resultFormat";
+
+  private static final String MAP = "map";
+  private static final String JSON = "json";
+
+  public static final ResultFormat DEFAULT = new ResultFormat(false, FieldMask.ALL);
+
+  private final boolean json;
+  private final FieldMask mask;
+
+  private ResultFormat(boolean json, @NonNull FieldMask mask) {
+    this.json = json;
+    this.mask = mask;
+  }
+
+  /** Has to be read on the calling thread, like any other {@code ReadableMap} access */
+  @NonNull
+  public static ResultFormat from(@Nullable ReadableMap options) {
+    if (options == null) {
+      return DEFAULT;
+    }
+
+    String format = getStringOrNull(options, KEY);
+    ArgCheck.isTrue(format == null || MAP.equals(format) || JSON.equals(format),
+      "resultFormat should be either map or json");
+    FieldMask mask = options.hasKey(FieldMask.KEY) && !options.isNull(FieldMask.KEY)
+      ? FieldMask.from(options.getArray(FieldMask.KEY))
+      : FieldMask.ALL;
+
+    if (format == null && mask.isAll()) {
+      return DEFAULT;
+    }
+    return new ResultFormat(JSON.equals(format), mask);
+  }
+
+  /**
+   * The source as a map whatever the format, for events that embed it
+   */
+  WritableMap sourceMap(@Nullable Source source) {
+    WritableMapSink sink = new WritableMapSink();
+    Converters.writeSource(mask(sink), source);
+    return sink.build();
+  }
+
+  Object token(@Nullable Token token) {
+    MapSink out = newSink();
+    Converters.writeToken(mask(out), token);
+    return build(out);
+  }
+
+  Object source(@Nullable Source source) {
+    MapSink out = newSink();
+    Converters.writeSource(mask(out), source);
+    return build(out);
+  }
+
+  /** The token of a Google Pay request, with the contacts it asked for */
+  Object androidPayToken(@Nullable Token token,
+                         @Nullable UserAddress billingAddress,
+                         @Nullable UserAddress shippingAddress,
+                         @Nullable String emailAddress) {
+    MapSink out = newSink();
+    Converters.writeTokenWithExtra(mask(out), token, billingAddress, shippingAddress, emailAddress);
+    return build(out);
+  }
+
+  public Object paymentMethod(@Nullable PaymentMethod paymentMethod) {
+    MapSink out = newSink();
+    Converters.writePaymentMethod(mask(out), paymentMethod);
+    return build(out);
+  }
+
+  Object paymentIntent(@Nullable PaymentIntent intent) {
+    MapSink out = newSink();
+    Converters.writePaymentIntent(mask(out), intent);
+    return build(out);
+  }
+
+  Object setupIntent(@Nullable SetupIntent intent) {
+    MapSink out = newSink();
+    Converters.writeSetupIntent(mask(out), intent);
+    return build(out);
+  }
+
+  /** The outcome of a confirmation or authentication, rather than the whole intent */
+  Object paymentIntentResult(@Nullable PaymentIntentResult result) {
+    MapSink out = newSink();
+    Converters.writePaymentIntentResult(mask(out), result);
+    return build(out);
+  }
+
+  Object setupIntentResult(@Nullable SetupIntentResult result) {
+    MapSink out = newSink();
+    Converters.writeSetupIntentResult(mask(out), result);
+    return build(out);
+  }
+
+  private MapSink newSink() {
+    return json ? JsonSink.obtain() : new WritableMapSink();
+  }
+
+  private MapSink mask(MapSink sink) {
+    return mask.isAll() ? sink : new MaskedSink(sink, mask);
+  }
+
+  private Object build(MapSink out) {
+    return json ? ((JsonSink) out).build() : ((WritableMapSink) out).build();
+  }
+}
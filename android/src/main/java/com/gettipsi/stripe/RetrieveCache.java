@@ -0,0 +1,146 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.TtlCache;
+import com.stripe.android.model.PaymentIntent;
+import com.stripe.android.model.SetupIntent;
+import com.stripe.android.model.Source;
+import com.stripe.android.model.StripeIntent;
+
+/**
+ * Recently retrieved sources and intents, keyed by id and client secret. An object whose
+ * status can still change is kept for {@code pendingTtlMs} only, one in a final status for
+ * {@code terminalTtlMs}. Confirmations drop the intent they changed.
+ *
+ * Holds the SDK objects rather than their converted maps, because a map handed to JS cannot
+ * be handed over again.
+ */
+final class RetrieveCache {
+
+  static final String KEY = "retrieveCache";
+  /** Call option that skips the lookup, the fresh result is still cached */
+  static final String REFRESH = "refresh";
+
+  private static final String MAX_ENTRIES = "maxEntries";
+  private static final String PENDING_TTL_MS = "pendingTtlMs";
+  private static final String TERMINAL_TTL_MS = "terminalTtlMs";
+
+  private static final int DEFAULT_MAX_ENTRIES = 100;
+  private static final long DEFAULT_PENDING_TTL_MS = 2000;
+  private static final long DEFAULT_TERMINAL_TTL_MS = 5 * 60 * 1000;
+
+  private final TtlCache<String, Object> cache;
+  private final long pendingTtlMs;
+  private final long terminalTtlMs;
+
+  RetrieveCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_PENDING_TTL_MS, DEFAULT_TERMINAL_TTL_MS);
+  }
+
+  private RetrieveCache(int maxEntries, long pendingTtlMs, long terminalTtlMs) {
+    ArgCheck.isTrue(pendingTtlMs >= 0, "pendingTtlMs should not be negative");
+    ArgCheck.isTrue(terminalTtlMs >= 0, "terminalTtlMs should not be negative");
+
+    this.cache = new TtlCache<>(maxEntries);
+    this.pendingTtlMs = pendingTtlMs;
+    this.terminalTtlMs = terminalTtlMs;
+  }
+
+  /**
+   * Reads the {@code retrieveCache} init option: {@code false} turns caching off, a map of
+   * {@code maxEntries}, {@code pendingTtlMs} and {@code terminalTtlMs} configures it.
+   */
+  @NonNull
+  static RetrieveCache from(@NonNull ReadableMap options) {
+    if (!options.hasKey(KEY) || options.isNull(KEY)) {
+      return new RetrieveCache();
+    }
+
+    switch (options.getType(KEY)) {
+      case Boolean:
+        return options.getBoolean(KEY)
+          ? new RetrieveCache()
+          : new RetrieveCache(1, 0, 0);
+      case Map:
+        ReadableMap config = options.getMap(KEY);
+        return new RetrieveCache(
+          config.hasKey(MAX_ENTRIES) ? config.getInt(MAX_ENTRIES) : DEFAULT_MAX_ENTRIES,
+          config.hasKey(PENDING_TTL_MS) ? (long) config.getDouble(PENDING_TTL_MS) : DEFAULT_PENDING_TTL_MS,
+          config.hasKey(TERMINAL_TTL_MS) ? (long) config.getDouble(TERMINAL_TTL_MS) : DEFAULT_TERMINAL_TTL_MS);
+      default:
+        throw new IllegalArgumentException("retrieveCache should be either a boolean or a map");
+    }
+  }
+
+  @Nullable
+  Source getSource(@NonNull String sourceId, @NonNull String clientSecret) {
+    return (Source) cache.get(sourceKey(sourceId, clientSecret));
+  }
+
+  void putSource(@NonNull Source source, @NonNull String clientSecret) {
+    cache.put(sourceKey(source.getId(), clientSecret), source,
+      SourcePoller.isTerminal(source.getStatus()) ? terminalTtlMs : pendingTtlMs);
+  }
+
+  @Nullable
+  PaymentIntent getPaymentIntent(@NonNull String clientSecret) {
+    return (PaymentIntent) cache.get(paymentIntentKey(clientSecret));
+  }
+
+  void putPaymentIntent(@NonNull PaymentIntent intent, @NonNull String clientSecret) {
+    cache.put(paymentIntentKey(clientSecret), intent, ttlFor(intent));
+  }
+
+  @Nullable
+  SetupIntent getSetupIntent(@NonNull String clientSecret) {
+    return (SetupIntent) cache.get(setupIntentKey(clientSecret));
+  }
+
+  void putSetupIntent(@NonNull SetupIntent intent, @NonNull String clientSecret) {
+    cache.put(setupIntentKey(clientSecret), intent, ttlFor(intent));
+  }
+
+  void invalidateSource(@NonNull String sourceId, @NonNull String clientSecret) {
+    cache.invalidate(sourceKey(sourceId, clientSecret));
+  }
+
+  /** Drops the payment or setup intent with the client secret, whichever it is */
+  void invalidateIntent(@Nullable String clientSecret) {
+    if (clientSecret != null) {
+      cache.invalidate(paymentIntentKey(clientSecret));
+      cache.invalidate(setupIntentKey(clientSecret));
+    }
+  }
+
+  WritableMap getStats() {
+    return cache.getStats();
+  }
+
+  void resetStats() {
+    cache.resetStats();
+  }
+
+  private long ttlFor(@NonNull StripeIntent intent) {
+    StripeIntent.Status status = intent.getStatus();
+    return status == StripeIntent.Status.Succeeded || status == StripeIntent.Status.Canceled
+      ? terminalTtlMs
+      : pendingTtlMs;
+  }
+
+  private static String sourceKey(String sourceId, String clientSecret) {
+    return "source:" + sourceId + ":" + clientSecret;
+  }
+
+  private static String paymentIntentKey(String clientSecret) {
+    return "paymentIntent:" + clientSecret;
+  }
+
+  private static String setupIntentKey(String clientSecret) {
+    return "setupIntent:" + clientSecret;
+  }
+}
@@ -0,0 +1,228 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.Clock;
+import com.gettipsi.stripe.util.RetryPolicy;
+import com.stripe.android.model.Source;
+import com.stripe.android.model.Source.SourceStatus;
+
+import java.util.Random;
+
+/**
+ * Re-retrieves a source until it leaves {@code pending} or a deadline passes. Delays grow
+ * exponentially from {@code initialDelayMs} up to {@code maxDelayMs}, and each one is
+ * randomized between half and all of its value so that many sources polled together do not
+ * hit the API in lockstep. The last delay is cut short so that one retrieve happens right at
+ * the deadline.
+ *
+ * Every retrieve first reserves its place with the given {@link Throttle}, and waits on the
+ * clock when it is over the limit.
+ *
+ * All timing goes through the given {@link Clock} and all retrieving through the given
+ * {@link Fetcher}, so the engine runs unchanged against a virtual clock and a fake API.
+ */
+final class SourcePoller {
+
+  interface Fetcher {
+    Source fetch() throws Exception;
+  }
+
+  interface Throttle {
+    /** Reserves the next retrieve, returning the milliseconds it has to wait */
+    long reserveMs();
+  }
+
+  interface Listener {
+    /** Every retrieved source, including the terminal one */
+    void onStatus(@NonNull Source source, int attempt, long elapsedMs);
+
+    void onTerminal(@NonNull Source source);
+
+    /** The source was still pending when the deadline passed */
+    void onDeadline(@Nullable Source lastSource);
+
+    /** A retrieve failed for good, or was still failing when the deadline passed */
+    void onError(@NonNull Exception e);
+  }
+
+  static final class Options {
+    static final String INITIAL_DELAY_MS = "initialDelayMs";
+    static final String MAX_DELAY_MS = "maxDelayMs";
+    static final String MULTIPLIER = "multiplier";
+    // Not timeoutMs, which is the call's own deadline, see RequestDeadlines
+    static final String POLL_TIMEOUT_MS = "pollTimeoutMs";
+
+    long initialDelayMs = 1000;
+    long maxDelayMs = 8000;
+    double multiplier = 2;
+    long timeoutMs = 60000;
+
+    static Options from(@Nullable ReadableMap map) {
+      Options options = new Options();
+      if (map == null) {
+        return options;
+      }
+
+      if (map.hasKey(INITIAL_DELAY_MS)) {
+        options.initialDelayMs = (long) map.getDouble(INITIAL_DELAY_MS);
+      }
+      if (map.hasKey(MAX_DELAY_MS)) {
+        options.maxDelayMs = (long) map.getDouble(MAX_DELAY_MS);
+      }
+      if (map.hasKey(MULTIPLIER)) {
+        options.multiplier = map.getDouble(MULTIPLIER);
+      }
+      if (map.hasKey(POLL_TIMEOUT_MS)) {
+        options.timeoutMs = (long) map.getDouble(POLL_TIMEOUT_MS);
+      }
+
+      ArgCheck.isTrue(options.initialDelayMs > 0, "initialDelayMs should be positive");
+      ArgCheck.isTrue(options.maxDelayMs >= options.initialDelayMs, "maxDelayMs should not be less than initialDelayMs");
+      ArgCheck.isTrue(options.multiplier >= 1, "multiplier should not be less than 1");
+      ArgCheck.isTrue(options.timeoutMs > 0, "pollTimeoutMs should be positive");
+      return options;
+    }
+  }
+
+  private final Clock clock;
+  private final Random random;
+  private final Options options;
+  private final RetryPolicy retryPolicy;
+  private final Throttle throttle;
+  private final Fetcher fetcher;
+  private final Listener listener;
+
+  private long startedAt;
+  private long deadline;
+  private int attempt;
+  private Source lastSource;
+  // Whether the next retrieve already holds its place with the throttle
+  private boolean admitted;
+  private volatile boolean cancelled;
+
+  SourcePoller(@NonNull Clock clock,
+               @NonNull Random random,
+               @NonNull Options options,
+               @NonNull RetryPolicy retryPolicy,
+               @NonNull Throttle throttle,
+               @NonNull Fetcher fetcher,
+               @NonNull Listener listener) {
+    this.clock = ArgCheck.nonNull(clock);
+    this.random = ArgCheck.nonNull(random);
+    this.options = ArgCheck.nonNull(options);
+    this.retryPolicy = ArgCheck.nonNull(retryPolicy);
+    this.throttle = ArgCheck.nonNull(throttle);
+    this.fetcher = ArgCheck.nonNull(fetcher);
+    this.listener = ArgCheck.nonNull(listener);
+  }
+
+  static boolean isTerminal(@Nullable String status) {
+    return SourceStatus.CHARGEABLE.equals(status)
+      || SourceStatus.CONSUMED.equals(status)
+      || SourceStatus.CANCELED.equals(status)
+      || SourceStatus.FAILED.equals(status);
+  }
+
+  void start() {
+    startedAt = clock.nowMillis();
+    deadline = startedAt + options.timeoutMs;
+    schedule(0);
+  }
+
+  /**
+   * Starts from a pending source the caller has just retrieved, which counts as the first
+   * attempt, so the next retrieve waits for its delay
+   */
+  void startAfter(@NonNull Source retrieved) {
+    ArgCheck.nonNull(retrieved);
+
+    startedAt = clock.nowMillis();
+    deadline = startedAt + options.timeoutMs;
+    attempt = 1;
+    lastSource = retrieved;
+    listener.onStatus(retrieved, attempt, 0);
+    schedule(nextDelayMs(attempt));
+  }
+
+  /** Stops polling, the listener hears nothing more */
+  void cancel() {
+    cancelled = true;
+  }
+
+  /** Delay before the retrieve following the given attempt, with jitter applied */
+  long nextDelayMs(int attempt) {
+    double backoff = options.initialDelayMs * Math.pow(options.multiplier, attempt - 1);
+    long delay = (long) Math.min(backoff, options.maxDelayMs);
+    long half = delay / 2;
+    return half + (long) (random.nextDouble() * (delay - half + 1));
+  }
+
+  private void poll() {
+    if (cancelled) {
+      return;
+    }
+
+    if (!admitted) {
+      long waitMs = throttle.reserveMs();
+      if (waitMs > 0) {
+        admitted = true;
+        schedule(waitMs);
+        return;
+      }
+    }
+    admitted = false;
+
+    attempt++;
+    Source source = null;
+    Exception error = null;
+    try {
+      source = fetcher.fetch();
+    } catch (Exception e) {
+      error = e;
+    }
+
+    long now = clock.nowMillis();
+    if (cancelled) {
+      return;
+    }
+
+    if (error != null) {
+      // Retrieving only reads, so any transient failure is safe to repeat
+      if (!retryPolicy.isTransient(error, true)) {
+        listener.onError(error);
+        return;
+      }
+    } else {
+      lastSource = source;
+      listener.onStatus(source, attempt, now - startedAt);
+      if (isTerminal(source.getStatus())) {
+        listener.onTerminal(source);
+        return;
+      }
+    }
+
+    if (now >= deadline) {
+      if (error != null) {
+        listener.onError(error);
+      } else {
+        listener.onDeadline(lastSource);
+      }
+      return;
+    }
+
+    schedule(Math.min(nextDelayMs(attempt), deadline - now));
+  }
+
+  private void schedule(long delayMs) {
+    clock.schedule(new Runnable() {
+      @Override
+      public void run() {
+        poll();
+      }
+    }, delayMs);
+  }
+}
@@ -0,0 +1,207 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.Converters;
+import com.gettipsi.stripe.util.InvalidParamsException;
+import com.gettipsi.stripe.util.ParamSchema;
+import com.gettipsi.stripe.util.ParamSchema.Params;
+import com.stripe.android.model.SourceParams;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The source types {@code createSourceWithParams} supports, each with the schema of its
+ * params and the SDK factory they are passed to. Supporting another type is one more entry.
+ */
+final class SourceTypes {
+
+  private interface Factory {
+    SourceParams create(@NonNull Params params);
+  }
+
+  private static final class SourceType {
+    final ParamSchema schema;
+    final Factory factory;
+
+    SourceType(ParamSchema schema, Factory factory) {
+      this.schema = schema;
+      this.factory = factory;
+    }
+  }
+
+  private static final String TYPE = "type";
+
+  private static final Map<String, SourceType> TYPES = new LinkedHashMap<>();
+
+  static {
+    add("alipay",
+      ParamSchema.builder()
+        .requiredInt("amount")
+        .requiredString("currency")
+        .optionalString("name")
+        .optionalString("email")
+        .requiredString("returnURL")
+        .build(),
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createAlipaySingleUseParams(
+            params.getInt("amount"),
+            params.getString("currency"),
+            params.getString("name"),
+            params.getString("email"),
+            params.getString("returnURL"));
+        }
+      });
+    add("bancontact",
+      ParamSchema.builder()
+        .requiredInt("amount")
+        .requiredString("name")
+        .requiredString("returnURL")
+        .optionalString("statementDescriptor")
+        .requiredString("preferredLanguage")
+        .build(),
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createBancontactParams(
+            params.getInt("amount"),
+            params.getString("name"),
+            params.getString("returnURL"),
+            params.getString("statementDescriptor"),
+            params.getString("preferredLanguage"));
+        }
+      });
+    add("giropay",
+      ParamSchema.builder()
+        .requiredInt("amount")
+        .requiredString("name")
+        .requiredString("returnURL")
+        .optionalString("statementDescriptor")
+        .build(),
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createGiropayParams(
+            params.getInt("amount"),
+            params.getString("name"),
+            params.getString("returnURL"),
+            params.getString("statementDescriptor"));
+        }
+      });
+    add("ideal",
+      ParamSchema.builder()
+        .requiredInt("amount")
+        .requiredString("name")
+        .requiredString("returnURL")
+        .optionalString("statementDescriptor")
+        .optionalString("bank")
+        .build(),
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createIdealParams(
+            params.getInt("amount"),
+            params.getString("name"),
+            params.getString("returnURL"),
+            params.getString("statementDescriptor"),
+            params.getString("bank"));
+        }
+      });
+    add("sepaDebit",
+      ParamSchema.builder()
+        .requiredString("name")
+        .requiredString("iban")
+        .optionalString("addressLine1")
+        .requiredString("city")
+        .requiredString("postalCode")
+        .requiredString("country")
+        .build(),
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createSepaDebitParams(
+            params.getString("name"),
+            params.getString("iban"),
+            params.getString("addressLine1"),
+            params.getString("city"),
+            params.getString("postalCode"),
+            params.getString("country"));
+        }
+      });
+    add("sofort",
+      ParamSchema.builder()
+        .requiredInt("amount")
+        .requiredString("returnURL")
+        .requiredString("country")
+        .optionalString("statementDescriptor")
+        .build(),
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createSofortParams(
+            params.getInt("amount"),
+            params.getString("returnURL"),
+            params.getString("country"),
+            params.getString("statementDescriptor"));
+        }
+      });
+    add("threeDSecure",
+      ParamSchema.builder()
+        .requiredInt("amount")
+        .requiredString("currency")
+        .requiredString("returnURL")
+        .requiredString("card")
+        .build(),
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createThreeDSecureParams(
+            params.getInt("amount"),
+            params.getString("currency"),
+            params.getString("returnURL"),
+            params.getString("card"));
+        }
+      });
+    add("card",
+      Converters.CARD_SCHEMA,
+      new Factory() {
+        @Override
+        public SourceParams create(@NonNull Params params) {
+          return SourceParams.createCardParams(Converters.createCard(params));
+        }
+      });
+  }
+
+  private SourceTypes() {}
+
+  private static void add(String type, ParamSchema schema, Factory factory) {
+    TYPES.put(type, new SourceType(schema, factory));
+  }
+
+  /**
+   * Validates the params against the schema of their {@code type} and builds them
+   *
+   * @throws InvalidParamsException listing every problem with the params
+   */
+  @NonNull
+  static SourceParams extract(@NonNull ReadableMap options) {
+    ArgCheck.nonNull(options);
+
+    Map<String, Object> values = options.toHashMap();
+    Object type = values.get(TYPE);
+    SourceType sourceType = type instanceof String ? TYPES.get(type) : null;
+    if (sourceType == null) {
+      throw new InvalidParamsException(Collections.singletonList(
+        "type should be one of " + TextUtils.join(", ", TYPES.keySet())));
+    }
+
+    return sourceType.factory.create(sourceType.schema.read(values));
+  }
+}
@@ -0,0 +1,76 @@
+package com.gettipsi.stripe;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import com.gettipsi.stripe.util.ArgCheck;
+import com.stripe.android.Stripe;
+
+/**
+ * Bounded LRU of {@link Stripe} clients keyed by publishable key and connected account, so
+ * switching between accounts reuses already configured clients instead of building new ones.
+ */
+final class StripeClientCache {
+
+  static final int DEFAULT_MAX_SIZE = 8;
+
+  private final Context context;
+  private final LruCache<Key, Stripe> clients;
+
+  StripeClientCache(@NonNull Context context) {
+    this(context, DEFAULT_MAX_SIZE);
+  }
+
+  StripeClientCache(@NonNull Context context, int maxSize) {
+    this.context = ArgCheck.nonNull(context).getApplicationContext();
+    this.clients = new LruCache<Key, Stripe>(maxSize) {
+      @Override
+      protected Stripe create(Key key) {
+        return key.stripeAccount == null
+          ? new Stripe(StripeClientCache.this.context, key.publishableKey)
+          : new Stripe(StripeClientCache.this.context, key.publishableKey, key.stripeAccount);
+      }
+    };
+  }
+
+  @NonNull
+  Stripe get(@NonNull String publishableKey, @Nullable String stripeAccount) {
+    ArgCheck.notEmptyString(publishableKey);
+    return clients.get(new Key(publishableKey, TextUtils.isEmpty(stripeAccount) ? null : stripeAccount));
+  }
+
+  void clear() {
+    clients.evictAll();
+  }
+
+  private static final class Key {
+    final String publishableKey;
+    final String stripeAccount;
+
+    Key(String publishableKey, String stripeAccount) {
+      this.publishableKey = publishableKey;
+      this.stripeAccount = stripeAccount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return publishableKey.equals(other.publishableKey) &&
+        TextUtils.equals(stripeAccount, other.stripeAccount);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * publishableKey.hashCode() + (stripeAccount == null ? 0 : stripeAccount.hashCode());
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.LatencyEstimator;
+import com.gettipsi.stripe.util.LatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-method latency histograms and outcome counters for the module's calls.
+ *
+ * Latency is split into phases: bridge-in (JS call to native entry, when the JS side sends
+ * its timestamp), queue (waiting for a scheduler worker), rate limit wait (held back by the
+ * client-side rate limiter), network (the Stripe request itself),
+ * conversion (building the result map) and total (native entry to settling the promise).
+ *
+ * The smoothed latency that adaptive timeouts are derived from outlives {@link #reset}, so
+ * clearing the metrics does not put deadlines back to their cold defaults.
+ */
+public final class StripeMetrics {
+
+  public enum Phase {
+    BRIDGE_IN("bridgeIn"),
+    QUEUE("queue"),
+    RATE_LIMIT("rateLimitWait"),
+    NETWORK("network"),
+    CONVERSION("conversion"),
+    TOTAL("total");
+
+    final String key;
+
+    Phase(String key) {
+      this.key = key;
+    }
+  }
+
+  private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LatencyEstimator> latencies = new ConcurrentHashMap<>();
+
+  @NonNull
+  public MethodMetrics forMethod(@NonNull String method) {
+    ArgCheck.nonNull(method);
+
+    MethodMetrics metrics = methods.get(method);
+    if (metrics == null) {
+      MethodMetrics created = new MethodMetrics(latencyFor(method));
+      metrics = methods.putIfAbsent(method, created);
+      if (metrics == null) {
+        metrics = created;
+      }
+    }
+    return metrics;
+  }
+
+  void recordError(@NonNull String method, @NonNull String errorCode) {
+    forMethod(method).recordError(errorCode);
+    increment(errors, errorCode);
+  }
+
+  @NonNull
+  public WritableMap snapshot() {
+    WritableMap methodsMap = Arguments.createMap();
+    for (Map.Entry<String, MethodMetrics> entry : methods.entrySet()) {
+      methodsMap.putMap(entry.getKey(), entry.getValue().toWritableMap());
+    }
+
+    WritableMap snapshot = Arguments.createMap();
+    snapshot.putMap("methods", methodsMap);
+    snapshot.putMap("errors", countersToWritableMap(errors));
+    return snapshot;
+  }
+
+  public void reset() {
+    methods.clear();
+    errors.clear();
+  }
+
+  private LatencyEstimator latencyFor(String method) {
+    LatencyEstimator latency = latencies.get(method);
+    if (latency == null) {
+      LatencyEstimator created = new LatencyEstimator();
+      latency = latencies.putIfAbsent(method, created);
+      if (latency == null) {
+        latency = created;
+      }
+    }
+    return latency;
+  }
+
+  public static final class MethodMetrics {
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong retriesExhausted = new AtomicLong();
+    private final LatencyEstimator latency;
+    private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+    MethodMetrics(@NonNull LatencyEstimator latency) {
+      this.latency = latency;
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new LatencyHistogram();
+      }
+    }
+
+    public void record(@NonNull Phase phase, long nanos) {
+      phases[phase.ordinal()].recordNanos(nanos);
+    }
+
+    void recordSuccess(long totalNanos) {
+      successes.incrementAndGet();
+      latency.update(totalNanos / 1e6);
+    }
+
+    /** Smoothed total latency of the successful calls */
+    @NonNull
+    public LatencyEstimator getLatencyEstimator() {
+      return latency;
+    }
+
+    void recordError(@NonNull String errorCode) {
+      increment(errors, errorCode);
+    }
+
+    void recordRetry() {
+      retries.incrementAndGet();
+    }
+
+    void recordRetriesExhausted() {
+      retriesExhausted.incrementAndGet();
+    }
+
+    WritableMap toWritableMap() {
+      WritableMap phasesMap = Arguments.createMap();
+      for (Phase phase : Phase.values()) {
+        LatencyHistogram histogram = phases[phase.ordinal()];
+        if (histogram.getCount() > 0) {
+          phasesMap.putMap(phase.key, histogram.toWritableMap());
+        }
+      }
+
+      WritableMap map = Arguments.createMap();
+      map.putDouble("successes", successes.get());
+      map.putDouble("smoothedLatencyMs", latency.getMeanMs());
+      map.putDouble("retries", retries.get());
+      map.putDouble("retriesExhausted", retriesExhausted.get());
+      map.putMap("errors", countersToWritableMap(errors));
+      map.putMap("phases", phasesMap);
+      return map;
+    }
+  }
+
+  private static void increment(ConcurrentMap<String, AtomicLong> counters, String key) {
+    AtomicLong counter = counters.get(key);
+    if (counter == null) {
+      AtomicLong created = new AtomicLong();
+      counter = counters.putIfAbsent(key, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    counter.incrementAndGet();
+  }
+
+  private static WritableMap countersToWritableMap(Map<String, AtomicLong> counters) {
+    WritableMap map = Arguments.createMap();
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      map.putDouble(entry.getKey(), entry.getValue().get());
+    }
+    return map;
+  }
+}
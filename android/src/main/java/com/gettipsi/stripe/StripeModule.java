@@ -3,45 +3,73 @@ package com.gettipsi.stripe;
 import android.app.Activity;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
+import android.util.Log;
 
 import com.facebook.react.bridge.ActivityEventListener;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.BaseActivityEventListener;
+import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
-import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.gettipsi.stripe.StripeMetrics.Phase;
 import com.gettipsi.stripe.dialog.AddCardDialogFragment;
+import com.gettipsi.stripe.dialog.CardFormPreloader;
+import com.gettipsi.stripe.util.Action;
 import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.BinTable;
+import com.gettipsi.stripe.util.CardFlipAnimator;
+import com.gettipsi.stripe.util.ConnectionPrewarmer;
 import com.gettipsi.stripe.util.Converters;
+import com.gettipsi.stripe.util.FieldMask;
+import com.gettipsi.stripe.util.ParamSchema;
 import com.gettipsi.stripe.util.Fun0;
+import com.gettipsi.stripe.util.ParamsHash;
+import com.gettipsi.stripe.util.PriorityScheduler;
+import com.gettipsi.stripe.util.PriorityScheduler.Priority;
+import com.gettipsi.stripe.util.RateLimiter;
+import com.gettipsi.stripe.util.RetryPolicy;
+import com.gettipsi.stripe.util.SingleFlight;
 import com.google.android.gms.wallet.WalletConstants;
 import com.stripe.android.ApiResultCallback;
 import com.stripe.android.AppInfo;
 import com.stripe.android.PaymentIntentResult;
 import com.stripe.android.SetupIntentResult;
-import com.stripe.android.SourceCallback;
 import com.stripe.android.Stripe;
-import com.stripe.android.TokenCallback;
 import com.stripe.android.model.Address;
+import com.stripe.android.model.BankAccount;
+import com.stripe.android.model.Card;
 import com.stripe.android.model.ConfirmPaymentIntentParams;
 import com.stripe.android.model.ConfirmSetupIntentParams;
+import com.stripe.android.model.PaymentIntent;
 import com.stripe.android.model.PaymentMethod;
 import com.stripe.android.model.PaymentMethodCreateParams;
+import com.stripe.android.model.SetupIntent;
 import com.stripe.android.model.Source;
 import com.stripe.android.model.Source.SourceStatus;
 import com.stripe.android.model.SourceParams;
 import com.stripe.android.model.StripeIntent;
 import com.stripe.android.model.Token;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static com.gettipsi.stripe.Errors.AUTHENTICATION_FAILED;
 import static com.gettipsi.stripe.Errors.CANCELLED;
@@ -50,11 +78,6 @@ import static com.gettipsi.stripe.Errors.UNEXPECTED;
 import static com.gettipsi.stripe.Errors.getDescription;
 import static com.gettipsi.stripe.Errors.getErrorCode;
 import static com.gettipsi.stripe.Errors.toErrorCode;
-import static com.gettipsi.stripe.util.Converters.convertPaymentIntentResultToWritableMap;
-import static com.gettipsi.stripe.util.Converters.convertPaymentMethodToWritableMap;
-import static com.gettipsi.stripe.util.Converters.convertSetupIntentResultToWritableMap;
-import static com.gettipsi.stripe.util.Converters.convertSourceToWritableMap;
-import static com.gettipsi.stripe.util.Converters.convertTokenToWritableMap;
 import static com.gettipsi.stripe.util.Converters.createBankAccount;
 import static com.gettipsi.stripe.util.Converters.createCard;
 import static com.gettipsi.stripe.util.Converters.getBooleanOrNull;
@@ -64,6 +87,9 @@ import static com.gettipsi.stripe.util.InitializationOptions.ANDROID_PAY_MODE_KE
 import static com.gettipsi.stripe.util.InitializationOptions.ANDROID_PAY_MODE_PRODUCTION;
 import static com.gettipsi.stripe.util.InitializationOptions.ANDROID_PAY_MODE_TEST;
 import static com.gettipsi.stripe.util.InitializationOptions.PUBLISHABLE_KEY;
+import static com.gettipsi.stripe.util.InitializationOptions.TIMEOUT_MS;
+import static com.gettipsi.stripe.util.InitializationOptions.PREPARE_CARD_FORM;
+import static com.gettipsi.stripe.util.InitializationOptions.WARM_UP;
 import static com.stripe.android.model.StripeIntent.Status.Canceled;
 import static com.stripe.android.model.StripeIntent.Status.RequiresAction;
 import static com.stripe.android.model.StripeIntent.Status.RequiresCapture;
@@ -73,6 +99,7 @@ import static com.stripe.android.model.StripeIntent.Status.Succeeded;
 public class StripeModule extends ReactContextBaseJavaModule {
 
   private static final String MODULE_NAME = StripeModule.class.getSimpleName();
+  private static final String TAG = MODULE_NAME;
 
   // If you change these, make sure to also change:
   //  ios/TPSStripe/TPSStripeManager
@@ -83,6 +110,62 @@ public class StripeModule extends ReactContextBaseJavaModule {
   private static final String APP_INFO_URL     = "https://github.com/tipsi/tipsi-stripe";
   private static final String APP_INFO_VERSION = "8.x";
   public static final String CLIENT_SECRET = "clientSecret";
+  public static final String STRIPE_ACCOUNT = "stripeAccount";
+
+  // Request codes the Stripe SDK starts its authentication activities with, see PaymentController
+  private static final int STRIPE_PAYMENT_REQUEST_CODE = 50000;
+  private static final int STRIPE_SETUP_REQUEST_CODE = 50001;
+
+  static final String SOURCE_STATUS_EVENT = "StripeSourceStatusChanged";
+  static final String CIRCUIT_STATE_EVENT = "StripeCircuitStateChanged";
+  private static final long REDIRECT_POLL_TIMEOUT_MS = 30000;
+
+  // Option keys that control how a call is made rather than what it does
+  private static final Set<String> CALL_OPTION_KEYS;
+  static {
+    Set<String> keys = new HashSet<>(RequestDeadlines.KEYS);
+    keys.add(RetryPolicy.KEY);
+    keys.add(RetrieveCache.REFRESH);
+    keys.add(ResultFormat.KEY);
+    keys.add(FieldMask.KEY);
+    CALL_OPTION_KEYS = Collections.unmodifiableSet(keys);
+  }
+
+  private static final ParamSchema PAYMENT_METHOD_SCHEMA = ParamSchema.builder()
+    .optionalMap("card", ParamSchema.builder()
+      .optionalString("token")
+      .requiredString("number").unless("token")
+      .requiredInt("expMonth").unless("token")
+      .requiredInt("expYear").unless("token")
+      .requiredString("cvc").unless("token")
+      .build())
+    .optionalMap("billingDetails", ParamSchema.builder()
+      .optionalMap("address", ParamSchema.builder()
+        .optionalString("city")
+        .optionalString("country")
+        .optionalString("line1")
+        .optionalString("line2")
+        .optionalString("postalCode")
+        .optionalString("state")
+        .build())
+      .optionalString("email")
+      .optionalString("name")
+      .optionalString("phone")
+      .build())
+    .optionalStringMap("metadata")
+    .build();
+
+  // Calls that wait for the customer, which the default timeout does not apply to
+  private static final Set<String> INTERACTIVE_METHODS = new HashSet<>(Arrays.asList(
+    "paymentRequestWithCardForm",
+    "paymentRequestWithAndroidPay",
+    "confirmPaymentIntent",
+    "authenticatePaymentIntent",
+    "confirmSetupIntent",
+    "authenticateSetupIntent",
+    "createSourceWithParams",
+    "awaitSourceStatus"
+  ));
 
   private static StripeModule sInstance = null;
 
@@ -94,34 +177,102 @@ public class StripeModule extends ReactContextBaseJavaModule {
     return mStripe;
   }
 
-  @Nullable
-  private Promise mCreateSourcePromise;
-
-  @Nullable
-  private Source mCreatedSource;
+  private final PendingRedirects mPendingRedirects = new PendingRedirects();
+  private final Random mRandom = new Random();
+  private volatile RetryPolicy mRetryPolicy = RetryPolicy.DEFAULT;
+  private volatile RateLimiter mRateLimiter = new RateLimiter();
+  private volatile CircuitBreaker mCircuitBreaker;
+  private volatile RetrieveCache mRetrieveCache = new RetrieveCache();
 
   private String mPublicKey;
-  private Stripe mStripe;
+  private volatile Stripe mStripe;
+  private final StripeClientCache mStripeClients;
+  private final CardFormPool mCardFormPool;
   private PayFlow mPayFlow;
-  private ReadableMap mErrorCodes;
+  private Map<String, Errors.ErrorCode> mErrorCodes;
+  private final PriorityScheduler mScheduler = new PriorityScheduler();
+  private final Executor mBackgroundExecutor = new Executor() {
+    @Override
+    public void execute(@NonNull Runnable command) {
+      mScheduler.execute(Priority.BACKGROUND, command);
+    }
+  };
+  private final SingleFlight<String, Object> mInFlight = new SingleFlight<>();
+  private ConnectionPrewarmer mPrewarmer = new ConnectionPrewarmer();
+  private final StripeMetrics mMetrics = new StripeMetrics();
+  private final ActivityResultDispatcher mActivityResults = new ActivityResultDispatcher(mScheduler);
+
+  private final Action<TrackedPromise> mRejectWithTimeout = new Action<TrackedPromise>() {
+    @Override
+    public void call(TrackedPromise promise) {
+      promise.reject(
+        getErrorCode(mErrorCodes, "timeout"),
+        getDescription(mErrorCodes, "timeout")
+      );
+    }
+  };
+  private final RequestDeadlines mDeadlines = new RequestDeadlines(mScheduler, mMetrics, mRejectWithTimeout,
+    new Action<TrackedPromise>() {
+      @Override
+      public void call(TrackedPromise promise) {
+        promise.reject(
+          getErrorCode(mErrorCodes, "requestCancelled"),
+          getDescription(mErrorCodes, "requestCancelled")
+        );
+      }
+    });
+  private final PendingConfirmations mPendingPayments = new PendingConfirmations(mScheduler, mRejectWithTimeout);
+  private final PendingConfirmations mPendingSetups = new PendingConfirmations(mScheduler, mRejectWithTimeout);
 
   private final ActivityEventListener mActivityEventListener = new BaseActivityEventListener() {
 
     @Override
     public void onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
-      boolean handled = getPayFlow().onActivityResult(activity, requestCode, resultCode, data);
+      boolean handled = mActivityResults.dispatch(activity, requestCode, resultCode, data);
       if (!handled) {
         super.onActivityResult(activity, requestCode, resultCode, data);
       }
     }
   };
 
+  private final LifecycleEventListener mLifecycleEventListener = new LifecycleEventListener() {
+    @Override
+    public void onHostResume() {}
 
-  public StripeModule(ReactApplicationContext reactContext) {
+    @Override
+    public void onHostPause() {}
+
+    @Override
+    public void onHostDestroy() {
+      // The prepared card form views hold the activity
+      CardFormPreloader.clear();
+    }
+  };
+
+
+  public StripeModule(ReactApplicationContext reactContext, CardFormPool cardFormPool) {
     super(reactContext);
 
+    mStripeClients = new StripeClientCache(reactContext);
+    mCardFormPool = ArgCheck.nonNull(cardFormPool);
+    setCircuitBreaker(new CircuitBreaker());
+
+    mActivityResults.register(STRIPE_PAYMENT_REQUEST_CODE, new ActivityResultDispatcher.Handler() {
+      @Override
+      public void onActivityResult(Activity activity, int resultCode, Intent data) {
+        onPaymentResult(data);
+      }
+    });
+    mActivityResults.register(STRIPE_SETUP_REQUEST_CODE, new ActivityResultDispatcher.Handler() {
+      @Override
+      public void onActivityResult(Activity activity, int resultCode, Intent data) {
+        onSetupResult(data);
+      }
+    });
+
     // Add the listener for `onActivityResult`
     reactContext.addActivityEventListener(mActivityEventListener);
+    reactContext.addLifecycleEventListener(mLifecycleEventListener);
 
     sInstance = this;
   }
@@ -131,8 +282,19 @@ public class StripeModule extends ReactContextBaseJavaModule {
     return MODULE_NAME;
   }
 
+  @Override
+  public void onCatalystInstanceDestroy() {
+    super.onCatalystInstanceDestroy();
+    getReactApplicationContext().removeLifecycleEventListener(mLifecycleEventListener);
+    mScheduler.shutdown();
+    mCardFormPool.destroy();
+    CardFormPreloader.setAutoPrepare(null);
+    CardFormPreloader.clear();
+  }
+
   @ReactMethod
   public void init(@NonNull ReadableMap options, @NonNull ReadableMap errorCodes) {
+    long startedAt = System.nanoTime();
     ArgCheck.nonNull(options);
 
     String newPubKey = Converters.getStringOrNull(options, PUBLISHABLE_KEY);
@@ -143,7 +305,7 @@ public class StripeModule extends ReactContextBaseJavaModule {
 
       mPublicKey = newPubKey;
       Stripe.setAppInfo(AppInfo.create(APP_INFO_NAME, APP_INFO_VERSION, APP_INFO_URL));
-      mStripe = new Stripe(getReactApplicationContext(), mPublicKey);
+      mStripe = mStripeClients.get(mPublicKey, null);
       getPayFlow().setPublishableKey(mPublicKey);
     }
 
@@ -154,9 +316,120 @@ public class StripeModule extends ReactContextBaseJavaModule {
     }
 
     if (mErrorCodes == null) {
-      mErrorCodes = errorCodes;
-      getPayFlow().setErrorCodes(errorCodes);
+      mErrorCodes = Errors.snapshot(errorCodes);
+      getPayFlow().setErrorCodes(mErrorCodes);
+    }
+
+    if (options.hasKey(TIMEOUT_MS)) {
+      mDeadlines.setDefaultTimeoutMs((long) options.getDouble(TIMEOUT_MS));
+    }
+
+    ReadableMap rateLimit = getMapOrNull(options, RateLimiter.KEY);
+    if (rateLimit != null) {
+      mRateLimiter = RateLimiter.from(rateLimit);
+    }
+
+    if (options.hasKey(RetryPolicy.KEY)) {
+      mRetryPolicy = RetryPolicy.from(options, RetryPolicy.DEFAULT);
+    }
+
+    if (options.hasKey(CircuitBreaker.KEY)) {
+      setCircuitBreaker(CircuitBreaker.from(options));
+    }
+
+    if (options.hasKey(RetrieveCache.KEY)) {
+      mRetrieveCache = RetrieveCache.from(options);
+    }
+
+    if (options.hasKey(CardFormPool.KEY)) {
+      mCardFormPool.configure(options.getInt(CardFormPool.KEY), getCurrentActivity());
+    }
+
+    if (getBooleanOrNull(options, WARM_UP, false)) {
+      prewarm(null);
+    }
+
+    if (getBooleanOrNull(options, PREPARE_CARD_FORM, false)) {
+      CardFormPreloader.setAutoPrepare(mBackgroundExecutor);
+      prepareCardForm(null);
     }
+
+    mMetrics.forMethod("init").record(Phase.TOTAL, System.nanoTime() - startedAt);
+  }
+
+  /**
+   * Opens a keep-alive connection to the API host on a background thread and creates the
+   * Google Pay client, so the first real request skips DNS, TCP, TLS and lazy SDK setup.
+   * Resolves with {@code {durationMs}} of the network part.
+   */
+  @ReactMethod
+  public void prewarm(@Nullable Promise jsPromise) {
+    final TrackedPromise promise = jsPromise == null ? null : track("prewarm", jsPromise, null);
+    UiThreadUtil.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        getPayFlow().prewarm();
+      }
+    });
+
+    final ConnectionPrewarmer prewarmer = mPrewarmer;
+    mScheduler.execute(Priority.BACKGROUND, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          long durationMs = prewarmer.warmUp();
+          if (promise != null) {
+            WritableMap result = Arguments.createMap();
+            result.putDouble("durationMs", durationMs);
+            promise.resolve(result);
+          }
+        } catch (Exception e) {
+          Log.w(TAG, "prewarm failed", e);
+          if (promise != null) {
+            promise.reject(toErrorCode(e), e.getMessage());
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Builds the views of the card form dialog ahead of {@code paymentRequestWithCardForm}: the
+   * card images are decoded on a background thread and the layout is inflated the next time
+   * the UI thread is idle. Resolves with {@code {durationMs}} once they are ready.
+   */
+  @ReactMethod
+  public void prepareCardForm(@Nullable Promise jsPromise) {
+    final TrackedPromise promise = jsPromise == null ? null : track("prepareCardForm", jsPromise, null);
+    Activity activity = getCurrentActivity();
+    if (activity == null) {
+      if (promise != null) {
+        promise.reject(
+          getErrorCode(mErrorCodes, "activityUnavailable"),
+          getDescription(mErrorCodes, "activityUnavailable")
+        );
+      }
+      return;
+    }
+
+    CardFormPreloader.prepare(activity, mBackgroundExecutor, promise == null ? null : new CardFormPreloader.Listener() {
+      @Override
+      public void onPrepared(long durationMs) {
+        WritableMap result = Arguments.createMap();
+        result.putDouble("durationMs", durationMs);
+        promise.resolve(result);
+      }
+
+      @Override
+      public void onFailed(@NonNull Exception e) {
+        promise.reject(toErrorCode(e), e.getMessage());
+      }
+    });
+  }
+
+  @VisibleForTesting
+  void setPrewarmer(@NonNull ConnectionPrewarmer prewarmer) {
+    mPrewarmer = ArgCheck.nonNull(prewarmer);
   }
 
   private PayFlow getPayFlow() {
@@ -164,7 +437,8 @@ public class StripeModule extends ReactContextBaseJavaModule {
       mPayFlow = PayFlow.create(
         new Fun0<Activity>() { public Activity call() {
           return getCurrentActivity();
-        }}
+        }},
+        mActivityResults
       );
     }
 
@@ -177,41 +451,56 @@ public class StripeModule extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  public void deviceSupportsAndroidPay(final Promise promise) {
+  public void deviceSupportsAndroidPay(final Promise jsPromise) {
+    final TrackedPromise promise = track("deviceSupportsAndroidPay", jsPromise, null);
     getPayFlow().deviceSupportsAndroidPay(false, promise);
   }
 
   @ReactMethod
-  public void canMakeAndroidPayPayments(final Promise promise) {
+  public void canMakeAndroidPayPayments(final Promise jsPromise) {
+    final TrackedPromise promise = track("canMakeAndroidPayPayments", jsPromise, null);
     getPayFlow().deviceSupportsAndroidPay(true, promise);
   }
 
   @ReactMethod
   public void setStripeAccount(final String stripeAccount) {
+    long startedAt = System.nanoTime();
     ArgCheck.notEmptyString(mPublicKey);
+    mStripe = mStripeClients.get(mPublicKey, stripeAccount);
+    mMetrics.forMethod("setStripeAccount").record(Phase.TOTAL, System.nanoTime() - startedAt);
+  }
+
+  /**
+   * Client for the connected account passed in the call options, or the module-wide one set
+   * by {@link #setStripeAccount} when the call does not specify an account.
+   */
+  private Stripe getStripe(@Nullable ReadableMap options) {
+    String stripeAccount = options == null ? null : getStringOrNull(options, STRIPE_ACCOUNT);
     if (stripeAccount == null) {
-      mStripe = new Stripe(getReactApplicationContext(), mPublicKey);
-    } else {
-      mStripe = new Stripe(getReactApplicationContext(), mPublicKey, stripeAccount);
+      return ArgCheck.nonNull(mStripe);
     }
+
+    return mStripeClients.get(ArgCheck.notEmptyString(mPublicKey), stripeAccount);
   }
 
   @ReactMethod
-  public void createTokenWithCard(final ReadableMap cardData, final Promise promise) {
+  public void createTokenWithCard(final ReadableMap cardData, final Promise jsPromise) {
+    final TrackedPromise promise = track("createTokenWithCard", jsPromise, cardData);
     try {
-      ArgCheck.nonNull(mStripe);
       ArgCheck.notEmptyString(mPublicKey);
 
-      mStripe.createToken(
-        createCard(cardData),
-        mPublicKey,
-        new TokenCallback() {
-          public void onSuccess(Token token) {
-            promise.resolve(convertTokenToWritableMap(token));
+      final Stripe stripe = getStripe(cardData);
+      final Card card = createCard(cardData);
+      final ResultFormat format = ResultFormat.from(cardData);
+      execute(Priority.USER_BLOCKING, promise, retryPolicy(cardData),
+        new Callable<Token>() {
+          public Token call() throws Exception {
+            return stripe.createTokenSynchronous(card);
           }
-          public void onError(Exception error) {
-            error.printStackTrace();
-            promise.reject(toErrorCode(error), error.getMessage());
+        },
+        new Action<Token>() {
+          public void call(Token token) {
+            promise.resolve(format.token(token));
           }
         });
     } catch (Exception e) {
@@ -220,22 +509,24 @@ public class StripeModule extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  public void createTokenWithBankAccount(final ReadableMap accountData, final Promise promise) {
+  public void createTokenWithBankAccount(final ReadableMap accountData, final Promise jsPromise) {
+    final TrackedPromise promise = track("createTokenWithBankAccount", jsPromise, accountData);
     try {
       ArgCheck.nonNull(mStripe);
       ArgCheck.notEmptyString(mPublicKey);
 
-      mStripe.createBankAccountToken(
-        createBankAccount(accountData),
-        mPublicKey,
-        null,
-        new TokenCallback() {
-          public void onSuccess(Token token) {
-            promise.resolve(convertTokenToWritableMap(token));
+      final Stripe stripe = mStripe;
+      final BankAccount bankAccount = createBankAccount(accountData);
+      final ResultFormat format = ResultFormat.from(accountData);
+      execute(Priority.USER_BLOCKING, promise, retryPolicy(accountData),
+        new Callable<Token>() {
+          public Token call() throws Exception {
+            return stripe.createBankAccountTokenSynchronous(bankAccount);
           }
-          public void onError(Exception error) {
-            error.printStackTrace();
-            promise.reject(toErrorCode(error), error.getMessage());
+        },
+        new Action<Token>() {
+          public void call(Token token) {
+            promise.resolve(format.token(token));
           }
         });
     } catch (Exception e) {
@@ -244,7 +535,237 @@ public class StripeModule extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  public void paymentRequestWithCardForm(ReadableMap params, final Promise promise) {
+  public void createTokensBatch(final ReadableArray items, final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("createTokensBatch", jsPromise, options);
+    try {
+      ArgCheck.nonNull(mStripe);
+      ArgCheck.nonNull(items);
+
+      BatchTokenizer.tokenize(mScheduler, mRateLimiter, mCircuitBreaker, mStripe, items, BatchTokenizer.concurrencyFrom(options), promise);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+    }
+  }
+
+  /**
+   * Brand, funding and the lengths of the number and CVC of cards starting with the prefix,
+   * null when the prefix does not tell
+   */
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public WritableMap lookupBin(final String prefix) {
+    return Converters.convertBinToWritableMap(
+      BinTable.get(getReactApplicationContext()).lookup(ArgCheck.nonNull(prefix)));
+  }
+
+  @ReactMethod
+  public void getSchedulerStats(final Promise promise) {
+    promise.resolve(mScheduler.getStats());
+  }
+
+  /**
+   * Resolves with per-method latency percentiles by phase, success and error counts, error
+   * counts by code, scheduler stats and the number of coalesced requests.
+   */
+  @ReactMethod
+  public void getMetricsSnapshot(final Promise promise) {
+    WritableMap snapshot = mMetrics.snapshot();
+    snapshot.putMap("scheduler", mScheduler.getStats());
+    snapshot.putDouble("coalescedRequests", mInFlight.getCoalescedCount());
+    snapshot.putInt("pendingActivityResults",
+      mActivityResults.getPendingCount() + mPendingPayments.size() + mPendingSetups.size());
+    snapshot.putInt("pendingRedirects", mPendingRedirects.size());
+    snapshot.putString("circuitBreaker", mCircuitBreaker.getState().key);
+    snapshot.putMap("retrieveCache", mRetrieveCache.getStats());
+    snapshot.putMap(CardFormPool.KEY, mCardFormPool.getStats());
+    snapshot.putMap("cardFlipFrames", CardFlipAnimator.getFrameStats());
+    promise.resolve(snapshot);
+  }
+
+  @ReactMethod
+  public void resetMetrics() {
+    mMetrics.reset();
+    mScheduler.resetStats();
+    mInFlight.resetCoalescedCount();
+    mRetrieveCache.resetStats();
+    mCardFormPool.resetStats();
+    CardFlipAnimator.resetFrameStats();
+  }
+
+  public StripeMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  private RetryPolicy retryPolicy(@Nullable ReadableMap options) {
+    return RetryPolicy.from(options, mRetryPolicy);
+  }
+
+  private TrackedPromise track(@NonNull String method, @NonNull Promise promise, @Nullable ReadableMap options) {
+    TrackedPromise tracked = new TrackedPromise(method, promise, mMetrics, options);
+    mDeadlines.arm(tracked, options, INTERACTIVE_METHODS.contains(method));
+    return tracked;
+  }
+
+  /**
+   * Rejects the pending call started with the given {@code requestId} with
+   * {@code requestCancelled}. Resolves with whether there was such a call.
+   */
+  @ReactMethod
+  public void cancel(final String requestId, final Promise promise) {
+    promise.resolve(mDeadlines.cancel(requestId));
+  }
+
+  /**
+   * Runs a blocking Stripe request that creates something on the module's scheduler, retrying
+   * it as the policy allows. Failures of the request itself are rejected with their error
+   * code, the result is handed to {@code onSuccess} on the worker thread.
+   */
+  private <T> void execute(@NonNull Priority priority,
+                           @NonNull final TrackedPromise promise,
+                           @NonNull RetryPolicy retryPolicy,
+                           @NonNull final Callable<T> request,
+                           @NonNull final Action<T> onSuccess) {
+    execute(priority, promise, null, retryPolicy, false, request, onSuccess);
+  }
+
+  /**
+   * Same as above, but while a call with the same {@code dedupKey} is in flight, this one does
+   * not go to the network and receives that call's outcome instead. Requests marked
+   * {@code readOnly} are also retried on errors that may have happened after the API got them.
+   */
+  private <T> void execute(@NonNull final Priority priority,
+                           @NonNull final TrackedPromise promise,
+                           @Nullable final String dedupKey,
+                           @NonNull final RetryPolicy retryPolicy,
+                           final boolean readOnly,
+                           @NonNull final Callable<T> request,
+                           @NonNull final Action<T> onSuccess) {
+    if (dedupKey != null) {
+      boolean isLeader = mInFlight.join(dedupKey, new SingleFlight.Listener<Object>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onSuccess(Object result) {
+          deliver(promise, onSuccess, (T) result);
+        }
+
+        @Override
+        public void onError(Exception e) {
+          promise.reject(toErrorCode(e), e.getMessage());
+        }
+      });
+      if (!isLeader) {
+        return;
+      }
+    }
+
+    mScheduler.execute(priority, new Runnable() {
+      private int attempt;
+      private long readyAt = System.nanoTime();
+      private boolean admitted;
+
+      @Override
+      public void run() {
+        long startedAt = System.nanoTime();
+        promise.record(Phase.QUEUE, startedAt - readyAt);
+
+        if (dedupKey == null && promise.isSettled()) {
+          // Timed out or cancelled while queued, nobody is waiting for the result any more
+          return;
+        }
+
+        if (!admitted) {
+          long waitNanos = mRateLimiter.acquire(promise.getMethod());
+          if (waitNanos == RateLimiter.REJECTED) {
+            rejectRateLimited(promise, dedupKey);
+            return;
+          }
+          if (waitNanos > 0) {
+            // Over the limit, the token is reserved and the request goes once it is due
+            admitted = true;
+            promise.record(Phase.RATE_LIMIT, waitNanos);
+            readyAt = startedAt + waitNanos;
+            mScheduler.schedule(priority, this, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            return;
+          }
+        }
+        admitted = false;
+
+        attempt++;
+        T result;
+        try {
+          result = mCircuitBreaker.call(request);
+          promise.record(Phase.NETWORK, System.nanoTime() - startedAt);
+        } catch (Exception e) {
+          Log.d(TAG, promise.getMethod() + " attempt " + attempt + " failed", e);
+          if (retryPolicy.shouldRetry(e, attempt, readOnly)) {
+            // The worker is released while waiting, the retry is enqueued once the delay passes
+            long delayMs = retryPolicy.delayMs(e, attempt, mRandom);
+            promise.recordRetry(attempt);
+            readyAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            mScheduler.schedule(priority, this, delayMs);
+            return;
+          }
+          if (attempt > 1 && retryPolicy.isTransient(e, readOnly)) {
+            promise.recordRetriesExhausted();
+          }
+
+          if (dedupKey != null) {
+            mInFlight.fail(dedupKey, e);
+          } else {
+            promise.reject(toErrorCode(e), e.getMessage());
+          }
+          return;
+        }
+
+        if (dedupKey != null) {
+          mInFlight.succeed(dedupKey, result);
+        } else {
+          deliver(promise, onSuccess, result);
+        }
+      }
+    });
+  }
+
+  private void rejectRateLimited(@NonNull TrackedPromise promise, @Nullable String dedupKey) {
+    Exception e = new ClientRateLimitException();
+    if (dedupKey != null) {
+      mInFlight.fail(dedupKey, e);
+    } else {
+      promise.reject(toErrorCode(e), e.getMessage());
+    }
+  }
+
+  private void setCircuitBreaker(@NonNull CircuitBreaker circuitBreaker) {
+    circuitBreaker.setListener(new CircuitBreaker.Listener() {
+      @Override
+      public void onStateChanged(@NonNull CircuitBreaker.State from, @NonNull CircuitBreaker.State to, @Nullable String errorCode) {
+        WritableMap event = Arguments.createMap();
+        event.putString("state", to.key);
+        event.putString("previousState", from.key);
+        event.putString("errorCode", errorCode);
+        emit(CIRCUIT_STATE_EVENT, event);
+      }
+    });
+    mCircuitBreaker = circuitBreaker;
+  }
+
+  private static <T> void deliver(@NonNull TrackedPromise promise, @NonNull Action<T> onSuccess, T result) {
+    long startedAt = System.nanoTime();
+    try {
+      onSuccess.call(result);
+      promise.record(Phase.CONVERSION, System.nanoTime() - startedAt);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+    }
+  }
+
+  /** Number of calls that were served by an identical call already in flight */
+  public long getCoalescedRequestCount() {
+    return mInFlight.getCoalescedCount();
+  }
+
+  @ReactMethod
+  public void paymentRequestWithCardForm(ReadableMap params, final Promise jsPromise) {
+    final TrackedPromise promise = track("paymentRequestWithCardForm", jsPromise, params);
     Activity currentActivity = getCurrentActivity();
     try {
       ArgCheck.nonNull(currentActivity);
@@ -254,7 +775,7 @@ public class StripeModule extends ReactContextBaseJavaModule {
         getErrorCode(mErrorCodes, "cancelled"),
         getDescription(mErrorCodes, "cancelled")
       );
-      cardDialog.setPromise(promise);
+      cardDialog.setPromise(promise, ResultFormat.from(params));
       cardDialog.show(currentActivity.getFragmentManager(), "AddNewCard");
     } catch (Exception e) {
       promise.reject(toErrorCode(e), e.getMessage());
@@ -262,144 +783,197 @@ public class StripeModule extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  public void paymentRequestWithAndroidPay(final ReadableMap payParams, final Promise promise) {
-    getPayFlow().paymentRequestWithAndroidPay(payParams, promise);
+  public void paymentRequestWithAndroidPay(final ReadableMap payParams, final Promise jsPromise) {
+    final TrackedPromise promise = track("paymentRequestWithAndroidPay", jsPromise, payParams);
+    ResultFormat format;
+    try {
+      format = ResultFormat.from(payParams);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+      return;
+    }
+    getPayFlow().paymentRequestWithAndroidPay(payParams, format, promise);
   }
 
-  private void attachPaymentResultActivityListener(final Promise promise) {
-    ActivityEventListener ael = new BaseActivityEventListener() {
-
+  private void onPaymentResult(Intent data) {
+    mStripe.onPaymentResult(STRIPE_PAYMENT_REQUEST_CODE, data, new ApiResultCallback<PaymentIntentResult>() {
       @Override
-      public void onActivityResult(Activity a, int requestCode, int resultCode, Intent data) {
-        final ActivityEventListener ael = this;
+      public void onSuccess(@NonNull PaymentIntentResult result) {
+        mRetrieveCache.invalidateIntent(result.getIntent().getClientSecret());
+        PendingConfirmations.Confirmation confirmation = mPendingPayments.take(result.getIntent().getClientSecret());
+        if (confirmation == null) {
+          return;
+        }
+        TrackedPromise promise = confirmation.promise;
 
-        mStripe.onPaymentResult(requestCode, data, new ApiResultCallback<PaymentIntentResult>() {
-          @Override
-          public void onSuccess(@NonNull PaymentIntentResult result) {
-            getReactApplicationContext().removeActivityEventListener(ael);
-
-            StripeIntent.Status resultingStatus = result.getIntent().getStatus();
-
-            if (Succeeded.equals(resultingStatus) ||
-                RequiresCapture.equals(resultingStatus) ||
-                RequiresConfirmation.equals(resultingStatus)) {
-              promise.resolve(convertPaymentIntentResultToWritableMap(result));
-            } else {
-              if (Canceled.equals(resultingStatus) ||
-                  RequiresAction.equals(resultingStatus)
-              ) {
-                promise.reject(CANCELLED, CANCELLED);      // TODO - normalize the message
-              } else {
-                promise.reject(FAILED, FAILED);
-              }
-            }
-          }
+        StripeIntent.Status resultingStatus = result.getIntent().getStatus();
 
-          @Override
-          public void onError(@NonNull Exception e) {
-            getReactApplicationContext().removeActivityEventListener(ael);
-            e.printStackTrace();
-            promise.reject(toErrorCode(e), e.getMessage());
+        if (Succeeded.equals(resultingStatus) ||
+            RequiresCapture.equals(resultingStatus) ||
+            RequiresConfirmation.equals(resultingStatus)) {
+          promise.resolve(confirmation.format.paymentIntentResult(result));
+        } else {
+          if (Canceled.equals(resultingStatus) ||
+              RequiresAction.equals(resultingStatus)
+          ) {
+            promise.reject(CANCELLED, CANCELLED);      // TODO - normalize the message
+          } else {
+            promise.reject(FAILED, FAILED);
           }
-        });
+        }
       }
 
       @Override
-      public void onActivityResult(int requestCode, int resultCode, Intent data) {
-        onActivityResult(null, requestCode, resultCode, data);
+      public void onError(@NonNull Exception e) {
+        e.printStackTrace();
+        PendingConfirmations.Confirmation confirmation = mPendingPayments.takeLatest();
+        if (confirmation != null) {
+          confirmation.promise.reject(toErrorCode(e), e.getMessage());
+        }
       }
-    };
-    getReactApplicationContext().addActivityEventListener(ael);
+    });
   }
 
-  private void attachSetupResultActivityListener(final Promise promise) {
-    ActivityEventListener ael = new BaseActivityEventListener() {
+  private void onSetupResult(Intent data) {
+    mStripe.onSetupResult(STRIPE_SETUP_REQUEST_CODE, data, new ApiResultCallback<SetupIntentResult>() {
       @Override
-      public void onActivityResult(Activity a, int requestCode, int resultCode, Intent data) {
-        final ActivityEventListener ael = this;
-
-        mStripe.onSetupResult(requestCode, data, new ApiResultCallback<SetupIntentResult>() {
-          @Override
-          public void onSuccess(@NonNull SetupIntentResult result) {
-            getReactApplicationContext().removeActivityEventListener(ael);
-
-            try {
-              switch (result.getIntent().getStatus()) {
-                case Canceled:
-                  // The Setup Intent was canceled, so reject the promise with a predefined code.
-                  promise.reject(CANCELLED, "The SetupIntent was canceled by the user.");
-                  break;
-                case RequiresAction:
-                case RequiresPaymentMethod:
-                  promise.reject(AUTHENTICATION_FAILED, "The user failed authentication.");
-                  break;
-                case Succeeded:
-                  promise.resolve(convertSetupIntentResultToWritableMap(result));
-                  break;
-                case RequiresCapture:
-                case RequiresConfirmation:
-                default:
-                  promise.reject(UNEXPECTED, "Unexpected state");
-              }
-            } catch (Exception e) {
-              promise.reject(UNEXPECTED, "Unexpected error");
-            }
-          }
+      public void onSuccess(@NonNull SetupIntentResult result) {
+        mRetrieveCache.invalidateIntent(result.getIntent().getClientSecret());
+        PendingConfirmations.Confirmation confirmation = mPendingSetups.take(result.getIntent().getClientSecret());
+        if (confirmation == null) {
+          return;
+        }
+        TrackedPromise promise = confirmation.promise;
 
-          @Override
-          public void onError(@NonNull Exception e) {
-            getReactApplicationContext().removeActivityEventListener(ael);
-            e.printStackTrace();
-            promise.reject(toErrorCode(e), e.getMessage());
+        try {
+          switch (result.getIntent().getStatus()) {
+            case Canceled:
+              // The Setup Intent was canceled, so reject the promise with a predefined code.
+              promise.reject(CANCELLED, "The SetupIntent was canceled by the user.");
+              break;
+            case RequiresAction:
+            case RequiresPaymentMethod:
+              promise.reject(AUTHENTICATION_FAILED, "The user failed authentication.");
+              break;
+            case Succeeded:
+              promise.resolve(confirmation.format.setupIntentResult(result));
+              break;
+            case RequiresCapture:
+            case RequiresConfirmation:
+            default:
+              promise.reject(UNEXPECTED, "Unexpected state");
           }
-        });
+        } catch (Exception e) {
+          promise.reject(UNEXPECTED, "Unexpected error");
+        }
       }
 
       @Override
-      public void onActivityResult(int requestCode, int resultCode, Intent data) {
-        onActivityResult(null, requestCode, resultCode, data);
+      public void onError(@NonNull Exception e) {
+        e.printStackTrace();
+        PendingConfirmations.Confirmation confirmation = mPendingSetups.takeLatest();
+        if (confirmation != null) {
+          confirmation.promise.reject(toErrorCode(e), e.getMessage());
+        }
       }
-    };
-    getReactApplicationContext().addActivityEventListener(ael);
+    });
   }
 
-  @ReactMethod
-  public void confirmPaymentIntent(final ReadableMap options, final Promise promise) {
-    attachPaymentResultActivityListener(promise);
+  /**
+   * Registers the promise for the result of the SDK's authentication activity, or rejects it
+   * right away when there is no activity to start it from.
+   *
+   * @return the activity to start the confirmation from, or null if the promise was rejected
+   */
+  @Nullable
+  private Activity awaitConfirmation(@NonNull PendingConfirmations pending,
+                                     @NonNull String clientSecret,
+                                     @NonNull ResultFormat format,
+                                     @NonNull TrackedPromise promise) {
+    // The intent is about to change, whatever was retrieved before is stale
+    mRetrieveCache.invalidateIntent(clientSecret);
 
     Activity activity = getCurrentActivity();
-    if (activity != null) {
-      mStripe.confirmPayment(activity, extractConfirmPaymentIntentParams(options));
+    if (activity == null) {
+      promise.reject(
+        getErrorCode(mErrorCodes, "activityUnavailable"),
+        getDescription(mErrorCodes, "activityUnavailable")
+      );
+      return null;
     }
+
+    TrackedPromise superseded = pending.add(clientSecret, promise, format, ActivityResultDispatcher.DEFAULT_TIMEOUT_MS);
+    if (superseded != null) {
+      superseded.reject(CANCELLED, CANCELLED);
+    }
+    return activity;
   }
 
   @ReactMethod
-  public void authenticatePaymentIntent(final ReadableMap options, final Promise promise) {
-    attachPaymentResultActivityListener(promise);
+  public void confirmPaymentIntent(final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("confirmPaymentIntent", jsPromise, options);
+    ConfirmPaymentIntentParams params;
+    ResultFormat format;
+    try {
+      params = extractConfirmPaymentIntentParams(options);
+      format = ResultFormat.from(options);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+      return;
+    }
+    Activity activity = awaitConfirmation(mPendingPayments, options.getString(CLIENT_SECRET), format, promise);
+    if (activity != null) {
+      mStripe.confirmPayment(activity, params);
+    }
+  }
 
+  @ReactMethod
+  public void authenticatePaymentIntent(final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("authenticatePaymentIntent", jsPromise, options);
     String clientSecret = options.getString(CLIENT_SECRET);
-    Activity activity = getCurrentActivity();
+    ResultFormat format;
+    try {
+      format = ResultFormat.from(options);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+      return;
+    }
+    Activity activity = awaitConfirmation(mPendingPayments, clientSecret, format, promise);
     if (activity != null) {
       mStripe.authenticatePayment(activity, clientSecret);
     }
   }
 
   @ReactMethod
-  public void confirmSetupIntent(final ReadableMap options, final Promise promise) {
-    attachSetupResultActivityListener(promise);
-
-    Activity activity = getCurrentActivity();
+  public void confirmSetupIntent(final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("confirmSetupIntent", jsPromise, options);
+    ConfirmSetupIntentParams params;
+    ResultFormat format;
+    try {
+      params = extractConfirmSetupIntentParams(options);
+      format = ResultFormat.from(options);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+      return;
+    }
+    Activity activity = awaitConfirmation(mPendingSetups, options.getString(CLIENT_SECRET), format, promise);
     if (activity != null) {
-      mStripe.confirmSetupIntent(activity, extractConfirmSetupIntentParams(options));
+      mStripe.confirmSetupIntent(activity, params);
     }
   }
 
   @ReactMethod
-  public void authenticateSetupIntent(final ReadableMap options, final Promise promise) {
-    attachSetupResultActivityListener(promise);
-
+  public void authenticateSetupIntent(final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("authenticateSetupIntent", jsPromise, options);
     String clientSecret = options.getString(CLIENT_SECRET);
-    Activity activity = getCurrentActivity();
+    ResultFormat format;
+    try {
+      format = ResultFormat.from(options);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+      return;
+    }
+    Activity activity = awaitConfirmation(mPendingSetups, clientSecret, format, promise);
     if (activity != null) {
       mStripe.authenticateSetup(activity, clientSecret);
     }
@@ -407,61 +981,100 @@ public class StripeModule extends ReactContextBaseJavaModule {
 
 
   @ReactMethod
-  public void createPaymentMethod(final ReadableMap options, final Promise promise) {
-
-    PaymentMethodCreateParams pmcp = extractPaymentMethodCreateParams(options);
+  public void createPaymentMethod(final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("createPaymentMethod", jsPromise, options);
 
-    mStripe.createPaymentMethod(pmcp, new ApiResultCallback<PaymentMethod>() {
+    final Stripe stripe;
+    final PaymentMethodCreateParams pmcp;
+    final ResultFormat format;
+    try {
+      stripe = getStripe(options);
+      pmcp = extractPaymentMethodCreateParams(options);
+      format = ResultFormat.from(options);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+      return;
+    }
 
-      @Override
-      public void onError(Exception error) {
-        promise.reject(toErrorCode(error), error.getMessage());
-      }
+    String dedupKey = ParamsHash.of("createPaymentMethod@" + System.identityHashCode(stripe), options, CALL_OPTION_KEYS);
 
-      @Override
-      public void onSuccess(PaymentMethod paymentMethod) {
-        promise.resolve(convertPaymentMethodToWritableMap(paymentMethod));
-      }
-    });
+    execute(Priority.USER_BLOCKING, promise, dedupKey, retryPolicy(options), false,
+      new Callable<PaymentMethod>() {
+        public PaymentMethod call() throws Exception {
+          return stripe.createPaymentMethodSynchronous(pmcp);
+        }
+      },
+      new Action<PaymentMethod>() {
+        public void call(PaymentMethod paymentMethod) {
+          promise.resolve(format.paymentMethod(paymentMethod));
+        }
+      });
   }
 
 
   @ReactMethod
-  public void createSourceWithParams(final ReadableMap options, final Promise promise) {
-
-    SourceParams sourceParams = extractSourceParams(options);
+  public void createSourceWithParams(final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("createSourceWithParams", jsPromise, options);
 
-    ArgCheck.nonNull(sourceParams);
-
-    mStripe.createSource(sourceParams, new SourceCallback() {
-      @Override
-      public void onError(Exception error) {
-        promise.reject(toErrorCode(error));
-      }
+    final Stripe stripe;
+    final SourceParams sourceParams;
+    final ResultFormat format;
+    try {
+      stripe = getStripe(options);
+      sourceParams = SourceTypes.extract(options);
+      format = ResultFormat.from(options);
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+      return;
+    }
 
-      @Override
-      public void onSuccess(Source source) {
-        if (Source.SourceFlow.REDIRECT.equals(source.getFlow())) {
-          Activity currentActivity = getCurrentActivity();
-          if (currentActivity == null) {
-            promise.reject(
-              getErrorCode(mErrorCodes, "activityUnavailable"),
-              getDescription(mErrorCodes, "activityUnavailable")
-            );
+    execute(Priority.USER_BLOCKING, promise, retryPolicy(options),
+      new Callable<Source>() {
+        public Source call() throws Exception {
+          return stripe.createSourceSynchronous(sourceParams);
+        }
+      },
+      new Action<Source>() {
+        public void call(final Source source) {
+          if (Source.SourceFlow.REDIRECT.equals(source.getFlow())) {
+            UiThreadUtil.runOnUiThread(new Runnable() {
+              @Override
+              public void run() {
+                startRedirect(stripe, source, promise, format);
+              }
+            });
           } else {
-            mCreateSourcePromise = promise;
-            mCreatedSource = source;
-            String redirectUrl = source.getRedirect().getUrl();
-            Intent browserIntent = new Intent(currentActivity, OpenBrowserActivity.class)
-                .addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP)
-                .putExtra(OpenBrowserActivity.EXTRA_URL, redirectUrl);
-            currentActivity.startActivity(browserIntent);
+            promise.resolve(format.source(source));
           }
-        } else {
-          promise.resolve(convertSourceToWritableMap(source));
         }
+      });
+  }
+
+  private void startRedirect(@NonNull Stripe stripe,
+                             @NonNull Source source,
+                             @NonNull TrackedPromise promise,
+                             @NonNull ResultFormat format) {
+    Activity currentActivity = getCurrentActivity();
+    if (currentActivity == null) {
+      promise.reject(
+        getErrorCode(mErrorCodes, "activityUnavailable"),
+        getDescription(mErrorCodes, "activityUnavailable")
+      );
+    } else {
+      PendingRedirects.Redirect superseded = mPendingRedirects.add(new PendingRedirects.Redirect(source, stripe, promise, format));
+      if (superseded != null) {
+        superseded.promise.reject(
+          getErrorCode(mErrorCodes, "redirectCancelled"),
+          getDescription(mErrorCodes, "redirectCancelled")
+        );
       }
-    });
+      String redirectUrl = source.getRedirect().getUrl();
+      Intent browserIntent = new Intent(currentActivity, OpenBrowserActivity.class)
+          .addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP)
+          .putExtra(OpenBrowserActivity.EXTRA_URL, redirectUrl)
+          .putExtra(OpenBrowserActivity.EXTRA_SOURCE_ID, source.getId());
+      currentActivity.startActivity(browserIntent);
+    }
   }
 
   private ConfirmSetupIntentParams extractConfirmSetupIntentParams(final ReadableMap options) {
@@ -525,7 +1138,7 @@ public class StripeModule extends ReactContextBaseJavaModule {
     */
     /*
     } else if (source != null) {
-      SourceParams sourceParams = extractSourceParams(source);
+      SourceParams sourceParams = SourceTypes.extract(source);
       cpip = ConfirmPaymentIntentParams.createWithSourceParams(sourceParams, clientSecret, returnURL, savePaymentMethod, extraParams);
     */
 
@@ -554,49 +1167,39 @@ public class StripeModule extends ReactContextBaseJavaModule {
   }
 
   private PaymentMethodCreateParams extractPaymentMethodCreateParams(final ReadableMap options) {
-
-    ReadableMap cardParams = getMapOrNull(options, "card");
-    ReadableMap billingDetailsParams = getMapOrNull(options, "billingDetails");
-    ReadableMap metadataParams = getMapOrNull(options, "metadata");
+    ParamSchema.Params params = PAYMENT_METHOD_SCHEMA.read(options);
+    ParamSchema.Params cardParams = params.getMap("card");
+    ParamSchema.Params billingDetailsParams = params.getMap("billingDetails");
 
     PaymentMethodCreateParams.Card card = null;
     PaymentMethod.BillingDetails billingDetails = null;
     Address address = null;
-    Map<String, String> metadata = new HashMap<>();
-
-    if (metadataParams != null) {
-      ReadableMapKeySetIterator iter = metadataParams.keySetIterator();
-      while (iter.hasNextKey()) {
-        String key = iter.nextKey();
-        metadata.put(key, metadataParams.getString(key));
-      }
-    }
 
     if (billingDetailsParams != null) {
 
-      ReadableMap addressParams = getMapOrNull(billingDetailsParams, "address");
+      ParamSchema.Params addressParams = billingDetailsParams.getMap("address");
 
       if (addressParams != null) {
         address = new Address.Builder().
-          setCity(getStringOrNull(addressParams, "city")).
-          setCountry(getStringOrNull(addressParams, "country")).
-          setLine1(getStringOrNull(addressParams, "line1")).
-          setLine2(getStringOrNull(addressParams, "line2")).
-          setPostalCode(getStringOrNull(addressParams, "postalCode")).
-          setState(getStringOrNull(addressParams, "state")).
+          setCity(addressParams.getString("city")).
+          setCountry(addressParams.getString("country")).
+          setLine1(addressParams.getString("line1")).
+          setLine2(addressParams.getString("line2")).
+          setPostalCode(addressParams.getString("postalCode")).
+          setState(addressParams.getString("state")).
           build();
       }
 
       billingDetails = new PaymentMethod.BillingDetails.Builder().
         setAddress(address).
-        setEmail(getStringOrNull(billingDetailsParams, "email")).
-        setName(getStringOrNull(billingDetailsParams,"name")).
-        setPhone(getStringOrNull(billingDetailsParams,"phone")).
+        setEmail(billingDetailsParams.getString("email")).
+        setName(billingDetailsParams.getString("name")).
+        setPhone(billingDetailsParams.getString("phone")).
         build();
     }
 
     if (cardParams != null) {
-      String token = getStringOrNull(cardParams, "token");
+      String token = cardParams.getString("token");
       if (token != null) {
         card = PaymentMethodCreateParams.Card.create(token);
       } else {
@@ -612,154 +1215,361 @@ public class StripeModule extends ReactContextBaseJavaModule {
     return PaymentMethodCreateParams.create(
       card,
       billingDetails,
-      metadata
+      params.getStringMap("metadata")
     );
   }
 
-  private SourceParams extractSourceParams(final ReadableMap options) {
-    String sourceType = options.getString("type");
-    SourceParams sourceParams = null;
-    switch (sourceType) {
-      case "alipay":
-        sourceParams = SourceParams.createAlipaySingleUseParams(
-          options.getInt("amount"),
-          options.getString("currency"),
-          getStringOrNull(options, "name"),
-          getStringOrNull(options, "email"),
-          options.getString("returnURL"));
-        break;
-      case "bancontact":
-        sourceParams = SourceParams.createBancontactParams(
-          options.getInt("amount"),
-          options.getString("name"),
-          options.getString("returnURL"),
-          getStringOrNull(options, "statementDescriptor"),
-          options.getString("preferredLanguage"));
-        break;
-      case "giropay":
-        sourceParams = SourceParams.createGiropayParams(
-          options.getInt("amount"),
-          options.getString("name"),
-          options.getString("returnURL"),
-          getStringOrNull(options, "statementDescriptor"));
-        break;
-      case "ideal":
-        sourceParams = SourceParams.createIdealParams(
-          options.getInt("amount"),
-          options.getString("name"),
-          options.getString("returnURL"),
-          getStringOrNull(options, "statementDescriptor"),
-          getStringOrNull(options, "bank"));
-        break;
-      case "sepaDebit":
-        sourceParams = SourceParams.createSepaDebitParams(
-          options.getString("name"),
-          options.getString("iban"),
-          getStringOrNull(options, "addressLine1"),
-          options.getString("city"),
-          options.getString("postalCode"),
-          options.getString("country"));
-        break;
-      case "sofort":
-        sourceParams = SourceParams.createSofortParams(
-          options.getInt("amount"),
-          options.getString("returnURL"),
-          options.getString("country"),
-          getStringOrNull(options, "statementDescriptor"));
-        break;
-      case "threeDSecure":
-        sourceParams = SourceParams.createThreeDSecureParams(
-          options.getInt("amount"),
-          options.getString("currency"),
-          options.getString("returnURL"),
-          options.getString("card"));
-        break;
-      case "card":
-        sourceParams = SourceParams.createCardParams(Converters.createCard(options));
-        break;
+  /**
+   * Rejects the source's call when the customer came back from the browser without being
+   * redirected to the app, or when another redirect took over the browser activity. Does
+   * nothing if the redirect has been processed already.
+   */
+  void cancelRedirect(@Nullable String sourceId) {
+    PendingRedirects.Redirect redirect = mPendingRedirects.getBySourceId(sourceId);
+    if (mPendingRedirects.remove(redirect)) {
+      redirect.promise.reject(
+        getErrorCode(mErrorCodes, "redirectCancelled"),
+        getDescription(mErrorCodes, "redirectCancelled")
+      );
     }
-    return sourceParams;
   }
 
-
   void processRedirect(@Nullable Uri redirectData) {
-    if (mCreatedSource == null || mCreateSourcePromise == null) {
-
+    if (redirectData == null) {
+      // Without a uri the source is unknown, it gets cancelled once the browser activity resumes
       return;
     }
 
-    if (redirectData == null) {
+    final String clientSecret = redirectData.getQueryParameter("client_secret");
+    final String sourceId = redirectData.getQueryParameter("source");
 
-      mCreateSourcePromise.reject(
-        getErrorCode(mErrorCodes, "redirectCancelled"),
-        getDescription(mErrorCodes, "redirectCancelled")
-      );
-      mCreatedSource = null;
-      mCreateSourcePromise = null;
+    PendingRedirects.Redirect redirect = mPendingRedirects.getByClientSecret(clientSecret);
+    if (redirect == null) {
+      // The client secret does not belong to any pending source, so fail the source named
+      // in the uri if there is one
+      redirect = mPendingRedirects.getBySourceId(sourceId);
+      if (mPendingRedirects.remove(redirect)) {
+        redirect.promise.reject(
+          getErrorCode(mErrorCodes, "redirectNoSource"),
+          getDescription(mErrorCodes, "redirectNoSource")
+        );
+      }
       return;
     }
 
-    final String clientSecret = redirectData.getQueryParameter("client_secret");
-    if (!mCreatedSource.getClientSecret().equals(clientSecret)) {
-      mCreateSourcePromise.reject(
-        getErrorCode(mErrorCodes, "redirectNoSource"),
-        getDescription(mErrorCodes, "redirectNoSource")
-      );
-      mCreatedSource = null;
-      mCreateSourcePromise = null;
+    // Removing the redirect makes sure it is not processed twice
+    if (!mPendingRedirects.remove(redirect)) {
       return;
     }
 
-    final String sourceId = redirectData.getQueryParameter("source");
-    if (!mCreatedSource.getId().equals(sourceId)) {
-      mCreateSourcePromise.reject(
+    final TrackedPromise promise = redirect.promise;
+    final Stripe stripe = redirect.stripe;
+    final ResultFormat format = redirect.format;
+
+    if (!redirect.source.getId().equals(sourceId)) {
+      promise.reject(
         getErrorCode(mErrorCodes, "redirectWrongSourceId"),
         getDescription(mErrorCodes, "redirectWrongSourceId")
       );
-      mCreatedSource = null;
-      mCreateSourcePromise = null;
       return;
     }
 
-    final Promise promise = mCreateSourcePromise;
-
-    // Nulls those properties to avoid processing them twice
-    mCreatedSource = null;
-    mCreateSourcePromise = null;
-
-    new AsyncTask<Void, Void, Void>() {
+    fetchSource(stripe, sourceId, clientSecret, Priority.USER_BLOCKING, promise, new Action<Source>() {
       @Override
-      protected Void doInBackground(Void... voids) {
-        Source source = null;
-        try {
-          source = mStripe.retrieveSourceSynchronous(sourceId, clientSecret);
-        } catch (Exception e) {
-
-          return null;
+      public void call(Source source) {
+        if (!SourceStatus.PENDING.equals(source.getStatus())) {
+          settleRedirect(source, promise, format);
+          return;
         }
 
-        switch (source.getStatus()) {
-          case SourceStatus.CHARGEABLE:
-          case SourceStatus.CONSUMED:
-            promise.resolve(convertSourceToWritableMap(source));
-            break;
-          case SourceStatus.CANCELED:
-            promise.reject(
-              getErrorCode(mErrorCodes, "redirectCancelled"),
-              getDescription(mErrorCodes, "redirectCancelled")
-            );
-            break;
-          case SourceStatus.PENDING:
-          case SourceStatus.FAILED:
-          default:
+        // Asynchronous methods such as SOFORT take a few seconds to leave pending
+        SourcePoller.Options options = new SourcePoller.Options();
+        options.timeoutMs = REDIRECT_POLL_TIMEOUT_MS;
+        pollSource(stripe, sourceId, clientSecret, options, source, Priority.USER_BLOCKING, promise, new SourcePoller.Listener() {
+          @Override
+          public void onStatus(@NonNull Source source, int attempt, long elapsedMs) {
+            emitSourceStatus(source, attempt, elapsedMs, format);
+          }
+
+          @Override
+          public void onTerminal(@NonNull Source source) {
+            settleRedirect(source, promise, format);
+          }
+
+          @Override
+          public void onDeadline(@Nullable Source lastSource) {
             promise.reject(
               getErrorCode(mErrorCodes, "redirectFailed"),
               getDescription(mErrorCodes, "redirectFailed")
             );
+          }
+
+          @Override
+          public void onError(@NonNull Exception e) {
+            promise.reject(toErrorCode(e), e.getMessage());
+          }
+        });
+      }
+    });
+  }
+
+  private void settleRedirect(@NonNull Source source, @NonNull TrackedPromise promise, @NonNull ResultFormat format) {
+    switch (source.getStatus()) {
+      case SourceStatus.CHARGEABLE:
+      case SourceStatus.CONSUMED:
+        promise.resolve(format.source(source));
+        break;
+      case SourceStatus.CANCELED:
+        promise.reject(
+          getErrorCode(mErrorCodes, "redirectCancelled"),
+          getDescription(mErrorCodes, "redirectCancelled")
+        );
+        break;
+      case SourceStatus.PENDING:
+      case SourceStatus.FAILED:
+      default:
+        promise.reject(
+          getErrorCode(mErrorCodes, "redirectFailed"),
+          getDescription(mErrorCodes, "redirectFailed")
+        );
+    }
+  }
+
+  /**
+   * Polls the source until its status is terminal and resolves with it, emitting a
+   * {@link #SOURCE_STATUS_EVENT} for every status retrieved on the way. Rejects with
+   * {@code sourceStatusPending} if the source is still pending when {@code timeoutMs} passes.
+   */
+  @ReactMethod
+  public void awaitSourceStatus(final String sourceId, final String clientSecret, final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("awaitSourceStatus", jsPromise, options);
+    try {
+      ArgCheck.notEmptyString(sourceId);
+      ArgCheck.notEmptyString(clientSecret);
+
+      Stripe stripe = getStripe(options);
+      final ResultFormat format = ResultFormat.from(options);
+      pollSource(stripe, sourceId, clientSecret, SourcePoller.Options.from(options), null, Priority.BACKGROUND, promise, new SourcePoller.Listener() {
+        @Override
+        public void onStatus(@NonNull Source source, int attempt, long elapsedMs) {
+          emitSourceStatus(source, attempt, elapsedMs, format);
+        }
+
+        @Override
+        public void onTerminal(@NonNull Source source) {
+          promise.resolve(format.source(source));
+        }
+
+        @Override
+        public void onDeadline(@Nullable Source lastSource) {
+          promise.reject(
+            getErrorCode(mErrorCodes, "sourceStatusPending"),
+            getDescription(mErrorCodes, "sourceStatusPending")
+          );
+        }
+
+        @Override
+        public void onError(@NonNull Exception e) {
+          promise.reject(toErrorCode(e), e.getMessage());
+        }
+      });
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+    }
+  }
+
+  private SourcePoller pollSource(@NonNull final Stripe stripe,
+                                  @NonNull final String sourceId,
+                                  @NonNull final String clientSecret,
+                                  @NonNull SourcePoller.Options options,
+                                  @Nullable Source retrieved,
+                                  @NonNull Priority priority,
+                                  @NonNull final TrackedPromise promise,
+                                  @NonNull SourcePoller.Listener listener) {
+    final SourcePoller poller = new SourcePoller(mScheduler.clock(priority), mRandom, options, mRetryPolicy,
+      new SourcePoller.Throttle() {
+        @Override
+        public long reserveMs() {
+          // Polling is background work, so it waits for as long as the limiter says
+          long waitNanos = mRateLimiter.acquire(RateLimiter.POLL_SOURCE, Long.MAX_VALUE);
+          if (waitNanos > 0) {
+            promise.record(Phase.RATE_LIMIT, waitNanos);
+          }
+          return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        }
+      },
+      new SourcePoller.Fetcher() {
+        @Override
+        public Source fetch() throws Exception {
+          long startedAt = System.nanoTime();
+          Source source = mCircuitBreaker.call(new Callable<Source>() {
+            @Override
+            public Source call() throws Exception {
+              return stripe.retrieveSourceSynchronous(sourceId, clientSecret);
+            }
+          });
+          mRetrieveCache.putSource(source, clientSecret);
+          promise.record(Phase.NETWORK, System.nanoTime() - startedAt);
+          return source;
+        }
+      },
+      listener);
+    if (retrieved != null) {
+      // Already pending when retrieved, so the first poll waits for its delay
+      poller.startAfter(retrieved);
+    } else {
+      poller.start();
+    }
+
+    promise.onSettled(new Runnable() {
+      @Override
+      public void run() {
+        poller.cancel();
+      }
+    });
+    return poller;
+  }
+
+  private void emitSourceStatus(@NonNull Source source, int attempt, long elapsedMs, @NonNull ResultFormat format) {
+    WritableMap event = Arguments.createMap();
+    event.putString("sourceId", source.getId());
+    event.putString("status", source.getStatus());
+    event.putInt("attempt", attempt);
+    event.putDouble("elapsedMs", elapsedMs);
+    event.putMap("source", format.sourceMap(source));
+    emit(SOURCE_STATUS_EVENT, event);
+  }
+
+  private void emit(@NonNull String eventName, @NonNull WritableMap event) {
+    ReactApplicationContext context = getReactApplicationContext();
+    if (context.hasActiveCatalystInstance()) {
+      context
+        .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+        .emit(eventName, event);
+    }
+  }
+
+  /**
+   * Resolves with the source, from the cache unless it is missing, expired or the
+   * {@code refresh} option is set
+   */
+  @ReactMethod
+  public void retrieveSource(final String sourceId, final String clientSecret, final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("retrieveSource", jsPromise, options);
+    try {
+      ArgCheck.notEmptyString(sourceId);
+      ArgCheck.notEmptyString(clientSecret);
+
+      final ResultFormat format = ResultFormat.from(options);
+      Source cached = isRefresh(options) ? null : mRetrieveCache.getSource(sourceId, clientSecret);
+      if (cached != null) {
+        promise.resolve(format.source(cached));
+        return;
+      }
+
+      fetchSource(getStripe(options), sourceId, clientSecret, Priority.BACKGROUND, promise, new Action<Source>() {
+        @Override
+        public void call(Source source) {
+          promise.resolve(format.source(source));
         }
-        return null;
+      });
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+    }
+  }
+
+  @ReactMethod
+  public void retrievePaymentIntent(final String clientSecret, final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("retrievePaymentIntent", jsPromise, options);
+    try {
+      ArgCheck.notEmptyString(clientSecret);
+
+      final ResultFormat format = ResultFormat.from(options);
+      PaymentIntent cached = isRefresh(options) ? null : mRetrieveCache.getPaymentIntent(clientSecret);
+      if (cached != null) {
+        promise.resolve(format.paymentIntent(cached));
+        return;
+      }
+
+      final Stripe stripe = getStripe(options);
+      String dedupKey = ParamsHash.of("retrievePaymentIntent@" + System.identityHashCode(stripe), clientSecret);
+
+      execute(Priority.BACKGROUND, promise, dedupKey, mRetryPolicy, true,
+        new Callable<PaymentIntent>() {
+          public PaymentIntent call() throws Exception {
+            PaymentIntent intent = stripe.retrievePaymentIntentSynchronous(clientSecret);
+            mRetrieveCache.putPaymentIntent(intent, clientSecret);
+            return intent;
+          }
+        },
+        new Action<PaymentIntent>() {
+          public void call(PaymentIntent intent) {
+            promise.resolve(format.paymentIntent(intent));
+          }
+        });
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+    }
+  }
+
+  @ReactMethod
+  public void retrieveSetupIntent(final String clientSecret, final ReadableMap options, final Promise jsPromise) {
+    final TrackedPromise promise = track("retrieveSetupIntent", jsPromise, options);
+    try {
+      ArgCheck.notEmptyString(clientSecret);
+
+      final ResultFormat format = ResultFormat.from(options);
+      SetupIntent cached = isRefresh(options) ? null : mRetrieveCache.getSetupIntent(clientSecret);
+      if (cached != null) {
+        promise.resolve(format.setupIntent(cached));
+        return;
       }
-    }.execute();
+
+      final Stripe stripe = getStripe(options);
+      String dedupKey = ParamsHash.of("retrieveSetupIntent@" + System.identityHashCode(stripe), clientSecret);
+
+      execute(Priority.BACKGROUND, promise, dedupKey, mRetryPolicy, true,
+        new Callable<SetupIntent>() {
+          public SetupIntent call() throws Exception {
+            SetupIntent intent = stripe.retrieveSetupIntentSynchronous(clientSecret);
+            mRetrieveCache.putSetupIntent(intent, clientSecret);
+            return intent;
+          }
+        },
+        new Action<SetupIntent>() {
+          public void call(SetupIntent intent) {
+            promise.resolve(format.setupIntent(intent));
+          }
+        });
+    } catch (Exception e) {
+      promise.reject(toErrorCode(e), e.getMessage());
+    }
+  }
+
+  private static boolean isRefresh(@Nullable ReadableMap options) {
+    return options != null && getBooleanOrNull(options, RetrieveCache.REFRESH, false);
+  }
+
+  /**
+   * Retrieves the source from the API, leaving the fresh copy in the cache
+   */
+  private void fetchSource(@NonNull final Stripe stripe,
+                           @NonNull final String sourceId,
+                           @NonNull final String clientSecret,
+                           @NonNull Priority priority,
+                           @NonNull TrackedPromise promise,
+                           @NonNull Action<Source> onSuccess) {
+    String dedupKey = ParamsHash.of("retrieveSource@" + System.identityHashCode(stripe), sourceId, clientSecret);
+
+    execute(priority, promise, dedupKey, mRetryPolicy, true,
+      new Callable<Source>() {
+        public Source call() throws Exception {
+          Source source = stripe.retrieveSourceSynchronous(sourceId, clientSecret);
+          mRetrieveCache.putSource(source, clientSecret);
+          return source;
+        }
+      },
+      onSuccess);
   }
 
 }
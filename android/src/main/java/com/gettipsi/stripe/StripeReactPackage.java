@@ -13,10 +13,13 @@ import java.util.List;
 
 public class StripeReactPackage implements ReactPackage {
 
+  // Shared by the module and the view manager of the current React context
+  private CardFormPool cardFormPool;
+
   @Override
   public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
     List<NativeModule> modules = new ArrayList<>();
-    modules.add(new StripeModule(reactContext));
+    modules.add(new StripeModule(reactContext, cardFormPool(reactContext)));
     return modules;
   }
 
@@ -26,6 +29,13 @@ public class StripeReactPackage implements ReactPackage {
 
   @Override
   public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
-    return Arrays.<ViewManager>asList(new CustomCardInputReactManager());
+    return Arrays.<ViewManager>asList(new CustomCardInputReactManager(cardFormPool(reactContext)));
+  }
+
+  private synchronized CardFormPool cardFormPool(ReactApplicationContext reactContext) {
+    if (cardFormPool == null || !cardFormPool.belongsTo(reactContext)) {
+      cardFormPool = new CardFormPool(reactContext);
+    }
+    return cardFormPool;
   }
 }
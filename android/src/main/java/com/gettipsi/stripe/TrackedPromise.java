@@ -0,0 +1,221 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.gettipsi.stripe.StripeMetrics.Phase;
+import com.gettipsi.stripe.util.ArgCheck;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Promise handed to the module's calls. It settles the JS promise at most once, ignoring any
+ * later resolve or reject, and records the call's latency phases and outcome in
+ * {@link StripeMetrics}.
+ */
+final class TrackedPromise implements Promise {
+
+  /** Epoch milliseconds at which the JS side made the call, sent along with the options */
+  static final String REQUESTED_AT = "_requestedAt";
+
+  /** Key of the retry report added to results and rejections of retried calls */
+  static final String RETRY_INFO = "retryInfo";
+
+  private static final String UNKNOWN_ERROR = "unknown";
+
+  private final Promise delegate;
+  private final String method;
+  private final StripeMetrics metrics;
+  private final StripeMetrics.MethodMetrics methodMetrics;
+  private final long startedAt = System.nanoTime();
+  private final AtomicBoolean settled = new AtomicBoolean();
+  private final List<Runnable> settleListeners = new CopyOnWriteArrayList<>();
+  private volatile int attempts = 1;
+  private volatile boolean retriesExhausted;
+
+  TrackedPromise(@NonNull String method,
+                 @NonNull Promise delegate,
+                 @NonNull StripeMetrics metrics,
+                 @Nullable ReadableMap options) {
+    this.delegate = ArgCheck.nonNull(delegate);
+    this.method = ArgCheck.nonNull(method);
+    this.metrics = ArgCheck.nonNull(metrics);
+    this.methodMetrics = metrics.forMethod(method);
+
+    if (options != null && options.hasKey(REQUESTED_AT)) {
+      long bridgeInMillis = System.currentTimeMillis() - (long) options.getDouble(REQUESTED_AT);
+      methodMetrics.record(Phase.BRIDGE_IN, Math.max(0, bridgeInMillis) * 1_000_000);
+    }
+  }
+
+  @NonNull
+  String getMethod() {
+    return method;
+  }
+
+  boolean isSettled() {
+    return settled.get();
+  }
+
+  void record(@NonNull Phase phase, long nanos) {
+    methodMetrics.record(phase, nanos);
+  }
+
+  /**
+   * Notes that the given attempt failed and another one follows
+   */
+  void recordRetry(int failedAttempt) {
+    attempts = failedAttempt + 1;
+    methodMetrics.recordRetry();
+  }
+
+  /**
+   * Notes that the last attempt failed with an error that was worth retrying, but no
+   * attempts were left
+   */
+  void recordRetriesExhausted() {
+    retriesExhausted = true;
+    methodMetrics.recordRetriesExhausted();
+  }
+
+  @Nullable
+  private WritableMap retryInfo() {
+    if (attempts == 1 && !retriesExhausted) {
+      return null;
+    }
+
+    WritableMap info = Arguments.createMap();
+    info.putInt("attempts", attempts);
+    info.putBoolean("exhausted", retriesExhausted);
+    return info;
+  }
+
+  /**
+   * Runs the listener once the promise is settled, right away if it already is
+   */
+  void onSettled(@NonNull Runnable listener) {
+    ArgCheck.nonNull(listener);
+
+    settleListeners.add(listener);
+    if (settled.get() && settleListeners.remove(listener)) {
+      listener.run();
+    }
+  }
+
+  private boolean settle(@Nullable String errorCode) {
+    if (!settled.compareAndSet(false, true)) {
+      return false;
+    }
+
+    long totalNanos = System.nanoTime() - startedAt;
+    methodMetrics.record(Phase.TOTAL, totalNanos);
+    if (errorCode == null) {
+      methodMetrics.recordSuccess(totalNanos);
+    } else {
+      metrics.recordError(method, errorCode);
+    }
+
+    for (Runnable listener : settleListeners) {
+      if (settleListeners.remove(listener)) {
+        listener.run();
+      }
+    }
+    return true;
+  }
+
+  private static String codeOrUnknown(@Nullable String code) {
+    return code == null ? UNKNOWN_ERROR : code;
+  }
+
+  public void resolve(@Nullable Object value) {
+    if (settle(null)) {
+      WritableMap retryInfo = retryInfo();
+      if (retryInfo != null && value instanceof WritableMap) {
+        ((WritableMap) value).putMap(RETRY_INFO, retryInfo);
+      }
+      delegate.resolve(value);
+    }
+  }
+
+  public void reject(String code, String message) {
+    if (settle(codeOrUnknown(code))) {
+      WritableMap retryInfo = retryInfo();
+      if (retryInfo == null) {
+        delegate.reject(code, message);
+      } else {
+        delegate.reject(code, message, retryInfo);
+      }
+    }
+  }
+
+  public void reject(String code, Throwable throwable) {
+    if (settle(codeOrUnknown(code))) {
+      WritableMap retryInfo = retryInfo();
+      if (retryInfo == null) {
+        delegate.reject(code, throwable);
+      } else {
+        delegate.reject(code, throwable, retryInfo);
+      }
+    }
+  }
+
+  public void reject(String code, String message, Throwable throwable) {
+    if (settle(codeOrUnknown(code))) {
+      WritableMap retryInfo = retryInfo();
+      if (retryInfo == null) {
+        delegate.reject(code, message, throwable);
+      } else {
+        delegate.reject(code, message, throwable, retryInfo);
+      }
+    }
+  }
+
+  public void reject(Throwable throwable) {
+    if (settle(UNKNOWN_ERROR)) {
+      delegate.reject(throwable);
+    }
+  }
+
+  public void reject(Throwable throwable, WritableMap userInfo) {
+    if (settle(UNKNOWN_ERROR)) {
+      delegate.reject(throwable, userInfo);
+    }
+  }
+
+  public void reject(String code, @NonNull WritableMap userInfo) {
+    if (settle(codeOrUnknown(code))) {
+      delegate.reject(code, userInfo);
+    }
+  }
+
+  public void reject(String code, Throwable throwable, WritableMap userInfo) {
+    if (settle(codeOrUnknown(code))) {
+      delegate.reject(code, throwable, userInfo);
+    }
+  }
+
+  public void reject(String code, String message, @NonNull WritableMap userInfo) {
+    if (settle(codeOrUnknown(code))) {
+      delegate.reject(code, message, userInfo);
+    }
+  }
+
+  public void reject(String code, String message, Throwable throwable, WritableMap userInfo) {
+    if (settle(codeOrUnknown(code))) {
+      delegate.reject(code, message, throwable, userInfo);
+    }
+  }
+
+  @Deprecated
+  public void reject(String message) {
+    if (settle(UNKNOWN_ERROR)) {
+      delegate.reject(message);
+    }
+  }
+}
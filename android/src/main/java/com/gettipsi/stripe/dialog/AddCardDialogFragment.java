@@ -12,6 +12,7 @@ import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.Toast;
@@ -21,9 +22,10 @@ import com.devmarvel.creditcardentry.library.CreditCard;
 import com.devmarvel.creditcardentry.library.CreditCardForm;
 import com.facebook.react.bridge.Promise;
 import com.gettipsi.stripe.R;
+import com.gettipsi.stripe.ResultFormat;
 import com.gettipsi.stripe.StripeModule;
 import com.gettipsi.stripe.util.CardFlipAnimator;
-import com.gettipsi.stripe.util.Converters;
+import com.gettipsi.stripe.util.CardNumber;
 import com.gettipsi.stripe.util.Utils;
 import com.stripe.android.ApiResultCallback;
 import com.stripe.android.model.Card;
@@ -49,9 +51,12 @@ public class AddCardDialogFragment extends DialogFragment {
   private ImageView imageFlipedCardBack;
 
   private volatile Promise promise;
+  private volatile ResultFormat format = ResultFormat.DEFAULT;
   private boolean successful;
   private CardFlipAnimator cardFlipAnimator;
   private Button doneButton;
+  // Follows the number field, so that the CVC length of the brand is known
+  private final CardNumber cardNumber = new CardNumber();
 
   public static AddCardDialogFragment newInstance(
     final String errorCode,
@@ -68,7 +73,12 @@ public class AddCardDialogFragment extends DialogFragment {
 
 
   public void setPromise(Promise promise) {
+    setPromise(promise, ResultFormat.DEFAULT);
+  }
+
+  public void setPromise(Promise promise, ResultFormat format) {
     this.promise = promise;
+    this.format = format;
   }
 
   @Override
@@ -83,7 +93,10 @@ public class AddCardDialogFragment extends DialogFragment {
 
   @Override
   public Dialog onCreateDialog(Bundle savedInstanceState) {
-    final View view = View.inflate(getActivity(), R.layout.payment_form_fragment_two, null);
+    View prepared = CardFormPreloader.take(getActivity());
+    final View view = prepared != null
+      ? prepared
+      : View.inflate(getActivity(), R.layout.payment_form_fragment_two, null);
     final AlertDialog dialog = new AlertDialog.Builder(getActivity())
       .setView(view)
       .setTitle(R.string.gettipsi_card_enter_dialog_title)
@@ -120,6 +133,7 @@ public class AddCardDialogFragment extends DialogFragment {
       promise = null;
     }
     super.onDismiss(dialog);
+    CardFormPreloader.onDialogGone(getActivity());
   }
 
   private void bindViews(final View view) {
@@ -131,6 +145,24 @@ public class AddCardDialogFragment extends DialogFragment {
 
 
   private void init() {
+    cardNumber.clear();
+    ((EditText) from.findViewById(R.id.cc_card)).addTextChangedListener(new TextWatcher() {
+      @Override
+      public void beforeTextChanged(CharSequence charSequence, int i, int i1, int i2) {
+        //unused
+      }
+
+      @Override
+      public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
+        cardNumber.update(charSequence);
+      }
+
+      @Override
+      public void afterTextChanged(Editable editable) {
+        //unused
+      }
+    });
+
     from.setOnFocusChangeListener(new View.OnFocusChangeListener() {
       @Override
       public void onFocusChange(final View view, boolean b) {
@@ -147,7 +179,7 @@ public class AddCardDialogFragment extends DialogFragment {
 
                 @Override
                 public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
-                  doneButton.setEnabled(charSequence.length() >= 3);
+                  doneButton.setEnabled(charSequence.length() >= cardNumber.brand().cvcLength);
                 }
 
                 @Override
@@ -204,7 +236,7 @@ public class AddCardDialogFragment extends DialogFragment {
             @Override
             public void onSuccess(PaymentMethod paymentMethod) {
               if (promise != null) {
-                promise.resolve(Converters.convertPaymentMethodToWritableMap(paymentMethod));
+                promise.resolve(format.paymentMethod(paymentMethod));
                 promise = null;
                 successful = true;
                 dismiss();
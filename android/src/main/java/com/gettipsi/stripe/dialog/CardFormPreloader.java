@@ -0,0 +1,206 @@
+package com.gettipsi.stripe.dialog;
+
+import android.app.Activity;
+import android.graphics.drawable.Drawable;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.facebook.react.bridge.UiThreadUtil;
+import com.gettipsi.stripe.R;
+import com.gettipsi.stripe.util.ArgCheck;
+import com.gettipsi.stripe.util.CardFlipAnimator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds the views of {@link AddCardDialogFragment} before the dialog is asked for, so that
+ * showing it only attaches them. The card images are decoded on a background executor, then
+ * the layout is inflated on the UI thread the next time it is idle. Views belong to the
+ * activity they were built for and are used once. Builds for different activities run apart,
+ * each resolving only the listeners that asked for its activity.
+ *
+ * The prepared views hold their activity, so they are dropped by {@link #clear} once the
+ * host is destroyed.
+ *
+ * With auto prepare on, a new set of views is built whenever the dialog goes away.
+ */
+public final class CardFormPreloader {
+
+  public interface Listener {
+    void onPrepared(long durationMs);
+
+    void onFailed(@NonNull Exception e);
+  }
+
+  // Everything below is only touched on the UI thread
+  private static Activity preparedFor;
+  private static View preparedView;
+  // Listeners of the builds in flight, by the activity they build for
+  private static final Map<Activity, List<Listener>> building = new HashMap<>();
+  private static Executor autoPrepareExecutor;
+
+  private CardFormPreloader() {}
+
+  /**
+   * Turns building views again after each dialog on or off, null turns it off
+   */
+  public static void setAutoPrepare(@Nullable final Executor background) {
+    UiThreadUtil.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        autoPrepareExecutor = background;
+      }
+    });
+  }
+
+  public static void prepare(@NonNull final Activity activity,
+                             @NonNull final Executor background,
+                             @Nullable final Listener listener) {
+    ArgCheck.nonNull(activity);
+    ArgCheck.nonNull(background);
+
+    UiThreadUtil.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        if (preparedView != null && preparedFor == activity) {
+          if (listener != null) {
+            listener.onPrepared(0);
+          }
+          return;
+        }
+        List<Listener> listeners = building.get(activity);
+        if (listeners == null) {
+          listeners = new ArrayList<>();
+          building.put(activity, listeners);
+          decode(activity, background, System.nanoTime());
+        }
+        if (listener != null) {
+          listeners.add(listener);
+        }
+      }
+    });
+  }
+
+  /**
+   * The views built for the activity, if they are ready. They are not handed out again.
+   */
+  @Nullable
+  static View take(@NonNull Activity activity) {
+    UiThreadUtil.assertOnUiThread();
+
+    if (preparedView == null || preparedFor != activity) {
+      return null;
+    }
+    View view = preparedView;
+    preparedView = null;
+    preparedFor = null;
+    return view;
+  }
+
+  /**
+   * Drops the prepared views, called when the host activity is destroyed. Builds in flight
+   * find their activity gone and fail.
+   */
+  public static void clear() {
+    UiThreadUtil.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        preparedView = null;
+        preparedFor = null;
+      }
+    });
+  }
+
+  /**
+   * Builds the views for the next dialog if auto prepare is on
+   */
+  static void onDialogGone(@Nullable Activity activity) {
+    UiThreadUtil.assertOnUiThread();
+
+    if (autoPrepareExecutor != null && activity != null && !activity.isFinishing()) {
+      prepare(activity, autoPrepareExecutor, null);
+    }
+  }
+
+  private static void decode(final Activity activity, Executor background, final long startedAt) {
+    background.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          // Decoded here, kept alive until inflation finds them in the resource cache
+          final Drawable front = ContextCompat.getDrawable(activity, R.drawable.stp_card_form_front);
+          final Drawable back = ContextCompat.getDrawable(activity, R.drawable.stp_card_form_back);
+          CardFlipAnimator.preload(activity);
+          UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+              inflateWhenIdle(activity, front, back, startedAt);
+            }
+          });
+        } catch (final Exception e) {
+          UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+              finish(activity, null, e, startedAt);
+            }
+          });
+        }
+      }
+    });
+  }
+
+  private static void inflateWhenIdle(final Activity activity,
+                                      final Drawable front,
+                                      final Drawable back,
+                                      final long startedAt) {
+    Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+      @Override
+      public boolean queueIdle() {
+        if (activity.isFinishing() || activity.isDestroyed()) {
+          finish(activity, null, new IllegalStateException("The activity is finishing"), startedAt);
+          return false;
+        }
+
+        try {
+          View view = View.inflate(activity, R.layout.payment_form_fragment_two, null);
+          ((ImageView) view.findViewById(R.id.imageFlippedCard)).setImageDrawable(front);
+          ((ImageView) view.findViewById(R.id.imageFlippedCardBack)).setImageDrawable(back);
+          finish(activity, view, null, startedAt);
+        } catch (Exception e) {
+          finish(activity, null, e, startedAt);
+        }
+        return false;
+      }
+    });
+  }
+
+  private static void finish(Activity activity,
+                             @Nullable View view,
+                             @Nullable Exception error,
+                             long startedAt) {
+    if (view != null) {
+      // Only one set of views is kept, the latest build wins
+      preparedFor = activity;
+      preparedView = view;
+    }
+
+    long durationMs = (System.nanoTime() - startedAt) / 1000000;
+    List<Listener> waiting = building.remove(activity);
+    for (Listener listener : waiting) {
+      if (error == null) {
+        listener.onPrepared(durationMs);
+      } else {
+        listener.onFailed(error);
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package com.gettipsi.stripe.util;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.gettipsi.stripe.R;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * What the leading digits of a card number tell about the card: its brand, funding and the
+ * lengths of its number and CVC. Read from {@code res/raw/bin_table.bin}, which
+ * {@code scripts/build-bin-table.js} generates, the first time it is needed.
+ *
+ * The table indexes every prefix of one to {@link #INDEX_DIGITS} digits directly, so a lookup
+ * is one array access. A prefix that several records share, such as a lone 3, has no entry.
+ */
+public final class BinTable {
+
+  public static final int INDEX_DIGITS = 4;
+
+  private static final int VERSION = 1;
+  private static final byte[] MAGIC = { 'B', 'I', 'N', 'T' };
+  // Position in the index of the first prefix with the given number of digits
+  private static final int[] INDEX_OFFSETS = { 0, 0, 10, 110, 1110 };
+  private static final int INDEX_SIZE = 11110;
+
+  // By the codes scripts/build-bin-table.js writes
+  private static final String[] FUNDINGS = { "unknown", "credit", "debit", "prepaid" };
+
+  public static final class Bin {
+    public final CardNumber.Brand brand;
+    public final String funding;
+    public final int panLength;
+    public final int cvcLength;
+
+    private Bin(CardNumber.Brand brand, String funding, int panLength, int cvcLength) {
+      this.brand = brand;
+      this.funding = funding;
+      this.panLength = panLength;
+      this.cvcLength = cvcLength;
+    }
+  }
+
+  private static volatile BinTable instance;
+
+  private final Bin[] records;
+  private final byte[] index;
+
+  private BinTable(Bin[] records, byte[] index) {
+    this.records = records;
+    this.index = index;
+  }
+
+  @NonNull
+  public static BinTable get(@NonNull Context context) {
+    BinTable table = instance;
+    if (table == null) {
+      synchronized (BinTable.class) {
+        table = instance;
+        if (table == null) {
+          InputStream in = context.getResources().openRawResource(R.raw.bin_table);
+          try {
+            table = read(in);
+          } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the BIN table", e);
+          } finally {
+            try {
+              in.close();
+            } catch (IOException ignored) {
+            }
+          }
+          instance = table;
+        }
+      }
+    }
+    return table;
+  }
+
+  @NonNull
+  static BinTable read(@NonNull InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+
+    byte[] magic = new byte[MAGIC.length];
+    data.readFully(magic);
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (magic[i] != MAGIC[i]) {
+        throw new IOException("Not a BIN table");
+      }
+    }
+    int version = data.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported BIN table version " + version);
+    }
+
+    Bin[] records = new Bin[data.readUnsignedByte()];
+    for (int i = 0; i < records.length; i++) {
+      records[i] = new Bin(
+        CardNumber.Brand.ofTableCode(data.readUnsignedByte()),
+        FUNDINGS[data.readUnsignedByte()],
+        data.readUnsignedByte(),
+        data.readUnsignedByte());
+    }
+
+    byte[] index = new byte[INDEX_SIZE];
+    data.readFully(index);
+    return new BinTable(records, index);
+  }
+
+  /**
+   * @param prefix leading digits of a card number, separators are skipped and digits past
+   * {@link #INDEX_DIGITS} ignored
+   */
+  @Nullable
+  public Bin lookup(@NonNull CharSequence prefix) {
+    int value = 0;
+    int digits = 0;
+    for (int i = 0; i < prefix.length() && digits < INDEX_DIGITS; i++) {
+      char c = prefix.charAt(i);
+      if (c >= '0' && c <= '9') {
+        value = value * 10 + (c - '0');
+        digits++;
+      }
+    }
+    return lookup(value, digits);
+  }
+
+  @Nullable
+  public Bin lookup(@NonNull CardNumber number) {
+    int digits = Math.min(number.length(), INDEX_DIGITS);
+    int value = 0;
+    for (int i = 0; i < digits; i++) {
+      value = value * 10 + number.digitAt(i);
+    }
+    return lookup(value, digits);
+  }
+
+  @Nullable
+  private Bin lookup(int value, int digits) {
+    if (digits == 0) {
+      return null;
+    }
+    int entry = index[INDEX_OFFSETS[digits] + value] & 0xff;
+    return entry == 0 ? null : records[entry - 1];
+  }
+}
@@ -0,0 +1,26 @@
+package com.gettipsi.stripe.util;
+
+// Generated by scripts/build-bin-table.js from the ranges of res/raw/bin_table.bin, do not edit
+
+/**
+ * Brand ranges of the BIN table, indexed by {@link CardNumber.Brand} table code
+ */
+final class BrandRanges {
+
+  static final int TRIE_NODES = 58;
+  static final int[] PAN_LENGTHS = { 16, 16, 15, 16, 16, 14, 16 };
+  static final int[] CVC_LENGTHS = { 3, 3, 4, 3, 3, 3, 3 };
+  static final String[][] PREFIXES = {
+    { "4" },
+    { "2221", "2222", "2223", "2224", "2225", "2226", "2227", "2228", "2229", "223",
+      "224", "225", "226", "227", "228", "229", "23", "24", "25", "26",
+      "270", "271", "2720", "50", "51", "52", "53", "54", "55", "67" },
+    { "34", "37" },
+    { "60", "64", "65" },
+    { "35" },
+    { "300", "301", "302", "303", "304", "305", "309", "36", "38", "39" },
+    { "62" }
+  };
+
+  private BrandRanges() {}
+}
@@ -2,50 +2,162 @@ package com.gettipsi.stripe.util;
 
 import android.animation.Animator;
 import android.animation.AnimatorInflater;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.AnimatorSet;
 import android.content.Context;
+import android.view.Choreographer;
+import android.view.View;
 import android.widget.ImageView;
 
+import com.facebook.react.bridge.WritableMap;
 import com.gettipsi.stripe.R;
 
 /**
  * Created by dmitriy on 11/14/16
+ *
+ * Animators are parsed once per process and cloned for each instance. Both cards are drawn
+ * into hardware layers while they turn, and a flip started during another one cancels it.
+ * Frame intervals of every flip go to a shared histogram.
  */
 
 public class CardFlipAnimator {
 
-    private final Context context;
+    private static final int[] ANIMATOR_IDS = {
+        R.animator.card_flip_right_in,
+        R.animator.card_flip_right_out,
+        R.animator.card_flip_left_in,
+        R.animator.card_flip_left_out
+    };
+
+    private static final LatencyHistogram frameIntervals = new LatencyHistogram();
+    private static volatile Animator[] prototypes;
+
     private final ImageView imageViewCardFront;
     private final ImageView imageViewCardBack;
-    private Animator animator1;
-    private Animator animator2;
-    private Animator animator3;
-    private Animator animator4;
+    private final FrameRecorder frameRecorder = new FrameRecorder();
+    private AnimatorSet showBack;
+    private AnimatorSet showFront;
+    private AnimatorSet running;
 
     public CardFlipAnimator(final Context context, final ImageView imageViewCardFront, final ImageView imageViewCardBack){
-        this.context = context;
         this.imageViewCardFront = imageViewCardFront;
         this.imageViewCardBack = imageViewCardBack;
-        init();
+        init(prototypes(context));
+    }
+
+    /**
+     * Parses the animators ahead of the first flip, safe to call from any thread
+     */
+    public static void preload(final Context context) {
+        prototypes(context);
+    }
+
+    /** Intervals between the frames drawn during flips */
+    public static WritableMap getFrameStats() {
+        return frameIntervals.toWritableMap();
+    }
+
+    public static void resetFrameStats() {
+        frameIntervals.reset();
+    }
+
+    private static Animator[] prototypes(final Context context) {
+        Animator[] loaded = prototypes;
+        if (loaded == null) {
+            synchronized (CardFlipAnimator.class) {
+                loaded = prototypes;
+                if (loaded == null) {
+                    loaded = new Animator[ANIMATOR_IDS.length];
+                    for (int i = 0; i < ANIMATOR_IDS.length; i++) {
+                        loaded[i] = AnimatorInflater.loadAnimator(context.getApplicationContext(), ANIMATOR_IDS[i]);
+                    }
+                    prototypes = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private void init(final Animator[] prototypes){
+        showBack = flip(prototypes[0].clone(), imageViewCardBack, prototypes[1].clone(), imageViewCardFront);
+        showFront = flip(prototypes[2].clone(), imageViewCardFront, prototypes[3].clone(), imageViewCardBack);
     }
 
-    private void init(){
-        animator1 = AnimatorInflater.loadAnimator(context, R.animator.card_flip_right_in);
-        animator2 = AnimatorInflater.loadAnimator(context, R.animator.card_flip_right_out);
-        animator3 = AnimatorInflater.loadAnimator(context, R.animator.card_flip_left_in);
-        animator4 = AnimatorInflater.loadAnimator(context, R.animator.card_flip_left_out);
-        animator1.setTarget(imageViewCardBack);
-        animator2.setTarget(imageViewCardFront);
-        animator3.setTarget(imageViewCardFront);
-        animator4.setTarget(imageViewCardBack);
+    private AnimatorSet flip(final Animator in, final View inTarget, final Animator out, final View outTarget) {
+        in.setTarget(inTarget);
+        out.setTarget(outTarget);
+
+        final AnimatorSet set = new AnimatorSet();
+        set.playTogether(in, out);
+        set.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationStart(Animator animation) {
+                setLayerType(View.LAYER_TYPE_HARDWARE);
+                frameRecorder.start();
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                // Also called after a cancel
+                frameRecorder.stop();
+                setLayerType(View.LAYER_TYPE_NONE);
+                if (running == set) {
+                    running = null;
+                }
+            }
+        });
+        return set;
     }
 
     public void showBack(){
-        animator1.start();
-        animator2.start();
+        start(showBack);
     }
 
     public void showFront(){
-        animator3.start();
-        animator4.start();
+        start(showFront);
+    }
+
+    private void start(final AnimatorSet set) {
+        if (running != null) {
+            running.cancel();
+        }
+        running = set;
+        set.start();
+    }
+
+    private void setLayerType(final int layerType) {
+        imageViewCardFront.setLayerType(layerType, null);
+        imageViewCardBack.setLayerType(layerType, null);
+    }
+
+    private static final class FrameRecorder implements Choreographer.FrameCallback {
+
+        private boolean recording;
+        private long lastFrameNanos;
+
+        void start() {
+            if (!recording) {
+                recording = true;
+                lastFrameNanos = 0;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void stop() {
+            recording = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!recording) {
+                return;
+            }
+            if (lastFrameNanos != 0) {
+                frameIntervals.recordNanos(frameTimeNanos - lastFrameNanos);
+            }
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
     }
 }
@@ -0,0 +1,235 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Card number being typed, kept up to date one character at a time. Digits are stored along
+ * with running Luhn sums for both parities and the path taken through a trie of brand
+ * prefixes, so that appending or deleting a digit costs the same whatever the length and
+ * allocates nothing. Separators such as spaces are skipped.
+ *
+ * Not thread safe, each input field owns its instance.
+ */
+public final class CardNumber {
+
+  /**
+   * Brands told apart by their leading digits. Names are those of stripe-android's
+   * {@code Card.CardBrand}, prefixes and lengths come from {@link BrandRanges}.
+   */
+  public enum Brand {
+    VISA("Visa", 0),
+    MASTERCARD("MasterCard", 1),
+    AMERICAN_EXPRESS("American Express", 2),
+    DISCOVER("Discover", 3),
+    JCB("JCB", 4),
+    DINERS_CLUB("Diners Club", 5),
+    UNIONPAY("UnionPay", 6),
+    UNKNOWN("Unknown", -1);
+
+    public final String code;
+    public final int cvcLength;
+    public final int length;
+    // Code of the brand in the BIN table, -1 if it has none
+    final int tableCode;
+
+    Brand(String code, int tableCode) {
+      this.code = code;
+      this.tableCode = tableCode;
+      this.cvcLength = tableCode < 0 ? 3 : BrandRanges.CVC_LENGTHS[tableCode];
+      this.length = tableCode < 0 ? 16 : BrandRanges.PAN_LENGTHS[tableCode];
+    }
+
+    @NonNull
+    static Brand ofTableCode(int tableCode) {
+      for (Brand brand : values()) {
+        if (brand.tableCode == tableCode) {
+          return brand;
+        }
+      }
+      throw new IllegalArgumentException("Unknown brand code " + tableCode);
+    }
+  }
+
+  public static final int MAX_LENGTH = 19;
+
+  // Trie of brand prefixes, node 0 is the root, a child index of 0 means no child
+  private static final int[][] CHILDREN = new int[BrandRanges.TRIE_NODES][10];
+  private static final Brand[] NODE_BRANDS = new Brand[BrandRanges.TRIE_NODES];
+  private static int nodeCount = 1;
+
+  static {
+    for (Brand brand : Brand.values()) {
+      if (brand.tableCode >= 0) {
+        for (String prefix : BrandRanges.PREFIXES[brand.tableCode]) {
+          addPrefix(brand, prefix);
+        }
+      }
+    }
+  }
+
+  private final byte[] digits = new byte[MAX_LENGTH];
+  // Trie node reached after each digit, nodes[0] is the root
+  private final int[] nodes = new int[MAX_LENGTH + 1];
+  private int length;
+  // Luhn contributions of the digits at even and odd indexes, as they are and doubled
+  private int evenSum;
+  private int evenDoubledSum;
+  private int oddSum;
+  private int oddDoubledSum;
+  private String number;
+
+  public int length() {
+    return length;
+  }
+
+  public int digitAt(int index) {
+    ArgCheck.isTrue(index >= 0 && index < length, "index is out of bounds");
+    return digits[index];
+  }
+
+  /**
+   * Brand of the longest prefix entered so far that identifies one
+   */
+  @NonNull
+  public Brand brand() {
+    for (int i = length; i >= 0; i--) {
+      Brand brand = NODE_BRANDS[nodes[i]];
+      if (brand != null) {
+        return brand;
+      }
+    }
+    return Brand.UNKNOWN;
+  }
+
+  public boolean isLuhnValid() {
+    if (length == 0) {
+      return false;
+    }
+    // The last digit is never doubled, so the doubled ones share the parity of length
+    int sum = length % 2 == 0
+      ? evenDoubledSum + oddSum
+      : evenSum + oddDoubledSum;
+    return sum % 10 == 0;
+  }
+
+  /**
+   * Whether the number has the length of its brand and passes the Luhn check, numbers of no
+   * known brand never do
+   */
+  public boolean isValid() {
+    Brand brand = brand();
+    return brand != Brand.UNKNOWN && length == brand.length && isLuhnValid();
+  }
+
+  /**
+   * Appends a character, ignoring anything but digits and digits past {@link #MAX_LENGTH}
+   */
+  public void append(char c) {
+    if (c < '0' || c > '9' || length == MAX_LENGTH) {
+      return;
+    }
+    int digit = c - '0';
+    int doubled = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+    if (length % 2 == 0) {
+      evenSum += digit;
+      evenDoubledSum += doubled;
+    } else {
+      oddSum += digit;
+      oddDoubledSum += doubled;
+    }
+
+    int node = nodes[length];
+    digits[length] = (byte) digit;
+    length++;
+    nodes[length] = node == 0 && length > 1 ? 0 : CHILDREN[node][digit];
+    number = null;
+  }
+
+  public void deleteLast() {
+    if (length == 0) {
+      return;
+    }
+    length--;
+    int digit = digits[length];
+    int doubled = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+    if (length % 2 == 0) {
+      evenSum -= digit;
+      evenDoubledSum -= doubled;
+    } else {
+      oddSum -= digit;
+      oddDoubledSum -= doubled;
+    }
+    number = null;
+  }
+
+  public void clear() {
+    length = 0;
+    evenSum = 0;
+    evenDoubledSum = 0;
+    oddSum = 0;
+    oddDoubledSum = 0;
+    number = null;
+  }
+
+  /**
+   * Brings the number in line with the text of an input field. Digits up to the first one
+   * that differs are kept, so typing or deleting at the end only touches the last digit.
+   */
+  public void update(@NonNull CharSequence text) {
+    int common = 0;
+    int i = 0;
+    int textLength = text.length();
+    for (; i < textLength && common < length; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        continue;
+      }
+      if (c - '0' != digits[common]) {
+        break;
+      }
+      common++;
+    }
+
+    while (length > common) {
+      deleteLast();
+    }
+    for (; i < textLength; i++) {
+      append(text.charAt(i));
+    }
+  }
+
+  /**
+   * The digits entered, built on the first call after a change
+   */
+  @NonNull
+  @Override
+  public String toString() {
+    if (number == null) {
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = (char) ('0' + digits[i]);
+      }
+      number = new String(chars);
+    }
+    return number;
+  }
+
+  @NonNull
+  public static CardNumber of(@NonNull CharSequence text) {
+    CardNumber cardNumber = new CardNumber();
+    cardNumber.update(ArgCheck.nonNull(text));
+    return cardNumber;
+  }
+
+  private static void addPrefix(Brand brand, String prefix) {
+    int node = 0;
+    for (int i = 0; i < prefix.length(); i++) {
+      int digit = prefix.charAt(i) - '0';
+      if (CHILDREN[node][digit] == 0) {
+        CHILDREN[node][digit] = nodeCount++;
+      }
+      node = CHILDREN[node][digit];
+    }
+    NODE_BRANDS[node] = brand;
+  }
+}
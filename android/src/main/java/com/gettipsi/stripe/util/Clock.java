@@ -0,0 +1,15 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Time source and timer for the module's time-based logic. Production code uses the wall clock
+ * and the module's scheduler, tests can drive it with a virtual clock that runs due work as
+ * time is advanced.
+ */
+public interface Clock {
+
+  long nowMillis();
+
+  void schedule(@NonNull Runnable runnable, long delayMs);
+}
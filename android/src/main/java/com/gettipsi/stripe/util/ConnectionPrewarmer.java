@@ -0,0 +1,90 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Resolves, connects and completes the TLS handshake with the API host ahead of the first
+ * real request. The response body is drained and the connection is left open, so it goes
+ * back to the platform's keep-alive pool that stripe-android's HttpURLConnection requests use.
+ */
+public final class ConnectionPrewarmer {
+
+  public static final String STRIPE_API_URL = "https://api.stripe.com/v1/";
+
+  private static final int TIMEOUT_MS = 10_000;
+
+  private final URL url;
+  @Nullable private final SSLSocketFactory sslSocketFactory;
+
+  public ConnectionPrewarmer() {
+    this(parseUrl(STRIPE_API_URL), null);
+  }
+
+  /**
+   * @param sslSocketFactory lets a stand-in HTTPS server with its own certificate be used
+   *                         instead of the real API host
+   */
+  public ConnectionPrewarmer(@NonNull URL url, @Nullable SSLSocketFactory sslSocketFactory) {
+    this.url = ArgCheck.nonNull(url);
+    this.sslSocketFactory = sslSocketFactory;
+  }
+
+  /**
+   * Blocks until the connection is established and the response is read.
+   *
+   * @return how long the warm-up took, in milliseconds
+   */
+  public long warmUp() throws IOException {
+    long start = System.nanoTime();
+
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    if (sslSocketFactory != null && connection instanceof HttpsURLConnection) {
+      ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+    }
+    connection.setConnectTimeout(TIMEOUT_MS);
+    connection.setReadTimeout(TIMEOUT_MS);
+    connection.setUseCaches(false);
+    connection.setRequestMethod("GET");
+
+    // Any HTTP status is fine, an unauthenticated request still primes DNS, TCP and TLS
+    int responseCode = connection.getResponseCode();
+    drain(responseCode >= HttpURLConnection.HTTP_BAD_REQUEST
+      ? connection.getErrorStream()
+      : connection.getInputStream());
+
+    return (System.nanoTime() - start) / 1000000;
+  }
+
+  private static void drain(@Nullable InputStream stream) throws IOException {
+    if (stream == null) {
+      return;
+    }
+
+    try {
+      byte[] buffer = new byte[1024];
+      while (stream.read(buffer) != -1) {
+        // Reading to the end lets the connection be reused
+      }
+    } finally {
+      stream.close();
+    }
+  }
+
+  private static URL parseUrl(String url) {
+    try {
+      return new URL(url);
+    } catch (MalformedURLException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
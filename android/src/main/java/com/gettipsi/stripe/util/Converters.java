@@ -39,23 +39,59 @@ import java.util.Map;
 public class Converters {
 
   public static WritableMap convertTokenToWritableMap(Token token) {
-    WritableMap newToken = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeToken(sink, token);
+    return sink.build();
+  }
 
-    if (token == null) return newToken;
+  public static void writeToken(@NonNull MapSink out, @Nullable Token token) {
+    if (token == null) return;
 
-    newToken.putString("tokenId", token.getId());
-    newToken.putBoolean("livemode", token.getLivemode());
-    newToken.putBoolean("used", token.getUsed());
-    newToken.putDouble("created", token.getCreated().getTime());
+    out.putString("tokenId", token.getId());
+    out.putBoolean("livemode", token.getLivemode());
+    out.putBoolean("used", token.getUsed());
+    out.putDouble("created", token.getCreated().getTime());
 
-    if (token.getCard() != null) {
-      newToken.putMap("card", convertCardToWritableMap(token.getCard()));
+    if (token.getCard() != null && out.wants("card")) {
+      out.beginMap("card");
+      writeCard(out, token.getCard());
+      out.endMap();
+    }
+    if (token.getBankAccount() != null && out.wants("bankAccount")) {
+      out.beginMap("bankAccount");
+      writeBankAccount(out, token.getBankAccount());
+      out.endMap();
     }
-    if (token.getBankAccount() != null) {
-      newToken.putMap("bankAccount", convertBankAccountToWritableMap(token.getBankAccount()));
+  }
+
+  /**
+   * The token with the contacts a Google Pay request asked for under {@code extra}
+   */
+  public static void writeTokenWithExtra(@NonNull MapSink out,
+                                         @Nullable Token token,
+                                         @Nullable UserAddress billingAddress,
+                                         @Nullable UserAddress shippingAddress,
+                                         @Nullable String emailAddress) {
+    writeToken(out, token);
+    if (!out.wants("extra")) {
+      return;
     }
 
-    return newToken;
+    out.beginMap("extra");
+    //add email address to billing and shipping contact as per apple
+    if (out.wants("billingContact")) {
+      out.beginMap("billingContact");
+      writeUserAddress(out, billingAddress);
+      out.putString("emailAddress", emailAddress);
+      out.endMap();
+    }
+    if (out.wants("shippingContact")) {
+      out.beginMap("shippingContact");
+      writeUserAddress(out, shippingAddress);
+      out.putString("emailAddress", emailAddress);
+      out.endMap();
+    }
+    out.endMap();
   }
 
   public static WritableMap putExtraToTokenMap(final WritableMap tokenMap, UserAddress billingAddress, UserAddress shippingAddress, String emailAddress) {
@@ -79,10 +115,8 @@ public class Converters {
     return tokenMap;
   }
 
-  private static WritableMap convertCardToWritableMap(final Card card) {
-    WritableMap result = Arguments.createMap();
-
-    if (card == null) return result;
+  private static void writeCard(@NonNull MapSink result, final Card card) {
+    if (card == null) return;
 
     result.putString("cardId", card.getId());
     result.putString("number", card.getNumber());
@@ -102,14 +136,16 @@ public class Converters {
     result.putString("fingerprint", card.getFingerprint() );
     result.putString("country", card.getCountry() );
     result.putString("currency", card.getCurrency() );
-
-    return result;
   }
 
   public static WritableMap convertBankAccountToWritableMap(BankAccount account) {
-    WritableMap result = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeBankAccount(sink, account);
+    return sink.build();
+  }
 
-    if (account == null) return result;
+  private static void writeBankAccount(@NonNull MapSink result, BankAccount account) {
+    if (account == null) return;
 
     result.putString("routingNumber", account.getRoutingNumber());
     result.putString("accountNumber", account.getAccountNumber());
@@ -120,8 +156,6 @@ public class Converters {
     result.putString("fingerprint", account.getFingerprint());
     result.putString("bankName", account.getBankName());
     result.putString("last4", account.getLast4());
-
-    return result;
   }
 
   public static String getValue(final ReadableMap map, final String key, final String def) {
@@ -183,26 +217,63 @@ public class Converters {
     return allowedCountriesForShipping;
   }
 
+  public static final ParamSchema CARD_SCHEMA = ParamSchema.builder()
+    .requiredString("number")
+    .requiredInt("expMonth")
+    .requiredInt("expYear")
+    .optionalString("cvc")
+    .optionalString("name")
+    .optionalString("addressLine1")
+    .optionalString("addressLine2")
+    .optionalString("addressCity")
+    .optionalString("addressState")
+    .optionalString("addressZip")
+    .optionalString("addressCountry")
+    .optionalString("brand")
+    .optionalString("last4")
+    .optionalString("fingerprint")
+    .optionalString("funding")
+    .optionalString("country")
+    .optionalString("currency")
+    .optionalString("id")
+    .build();
+
+  public static final ParamSchema BANK_ACCOUNT_SCHEMA = ParamSchema.builder()
+    .requiredString("accountNumber")
+    .requiredString("countryCode")
+    .requiredString("currency")
+    .optionalString("accountHolderName")
+    .optionalString("accountHolderType")
+    .optionalString("routingNumber")
+    .build();
+
   public static Card createCard(final ReadableMap cardData) {
+    return createCard(CARD_SCHEMA.read(cardData));
+  }
+
+  /**
+   * @param cardData params already read with {@link #CARD_SCHEMA}
+   */
+  public static Card createCard(final ParamSchema.Params cardData) {
     return new Card.Builder(
         cardData.getString("number"),
         cardData.getInt("expMonth"),
         cardData.getInt("expYear"),
-        getValue(cardData, "cvc"))
-      .name(getValue(cardData, "name"))
-      .addressLine1(getValue(cardData, "addressLine1"))
-      .addressLine2(getValue(cardData, "addressLine2"))
-      .addressCity(getValue(cardData, "addressCity"))
-      .addressState(getValue(cardData, "addressState"))
-      .addressZip(getValue(cardData, "addressZip"))
-      .addressCountry(getValue(cardData, "addressCountry"))
-      .brand(getValue(cardData, "brand"))
-      .last4(getValue(cardData, "last4"))
-      .fingerprint(getValue(cardData, "fingerprint"))
-      .funding(getValue(cardData, "funding"))
-      .country(getValue(cardData, "country"))
-      .currency(getValue(cardData, "currency"))
-      .id(getValue(cardData, "id"))
+        cardData.getString("cvc"))
+      .name(cardData.getString("name"))
+      .addressLine1(cardData.getString("addressLine1"))
+      .addressLine2(cardData.getString("addressLine2"))
+      .addressCity(cardData.getString("addressCity"))
+      .addressState(cardData.getString("addressState"))
+      .addressZip(cardData.getString("addressZip"))
+      .addressCountry(cardData.getString("addressCountry"))
+      .brand(cardData.getString("brand"))
+      .last4(cardData.getString("last4"))
+      .fingerprint(cardData.getString("fingerprint"))
+      .funding(cardData.getString("funding"))
+      .country(cardData.getString("country"))
+      .currency(cardData.getString("currency"))
+      .id(cardData.getString("id"))
       .build();
   }
 
@@ -210,39 +281,69 @@ public class Converters {
 
   @NonNull
   public static WritableMap convertSourceToWritableMap(@Nullable Source source) {
-    WritableMap newSource = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeSource(sink, source);
+    return sink.build();
+  }
 
+  public static void writeSource(@NonNull MapSink out, @Nullable Source source) {
     if (source == null) {
-      return newSource;
+      return;
     }
 
-    newSource.putString("sourceId", source.getId());
-    newSource.putInt("amount", source.getAmount().intValue());
-    newSource.putInt("created", source.getCreated().intValue());
-    newSource.putMap("codeVerification", convertCodeVerificationToWritableMap(source.getCodeVerification()));
-    newSource.putString("currency", source.getCurrency());
-    newSource.putString("flow", source.getFlow());
-    newSource.putBoolean("livemode", source.isLiveMode());
-    newSource.putMap("metadata", stringMapToWritableMap(source.getMetaData()));
-    newSource.putMap("owner", convertOwnerToWritableMap(source.getOwner()));
-    newSource.putMap("receiver", convertReceiverToWritableMap(source.getReceiver()));
-    newSource.putMap("redirect", convertRedirectToWritableMap(source.getRedirect()));
-    newSource.putMap("sourceTypeData", mapToWritableMap(source.getSourceTypeData()));
-    newSource.putString("status", source.getStatus());
-    newSource.putString("type", source.getType());
-    newSource.putString("typeRaw", source.getTypeRaw());
-    newSource.putString("usage", source.getUsage());
-
-    return newSource;
+    out.putString("sourceId", source.getId());
+    out.putInt("amount", source.getAmount().intValue());
+    out.putInt("created", source.getCreated().intValue());
+    if (out.wants("codeVerification")) {
+      out.beginMap("codeVerification");
+      writeCodeVerification(out, source.getCodeVerification());
+      out.endMap();
+    }
+    out.putString("currency", source.getCurrency());
+    out.putString("flow", source.getFlow());
+    out.putBoolean("livemode", source.isLiveMode());
+    if (out.wants("metadata")) {
+      out.beginMap("metadata");
+      writeStringMap(out, source.getMetaData());
+      out.endMap();
+    }
+    if (out.wants("owner")) {
+      out.beginMap("owner");
+      writeOwner(out, source.getOwner());
+      out.endMap();
+    }
+    if (out.wants("receiver")) {
+      out.beginMap("receiver");
+      writeReceiver(out, source.getReceiver());
+      out.endMap();
+    }
+    if (out.wants("redirect")) {
+      out.beginMap("redirect");
+      writeRedirect(out, source.getRedirect());
+      out.endMap();
+    }
+    if (out.wants("sourceTypeData")) {
+      out.beginMap("sourceTypeData");
+      writeValues(out, source.getSourceTypeData());
+      out.endMap();
+    }
+    out.putString("status", source.getStatus());
+    out.putString("type", source.getType());
+    out.putString("typeRaw", source.getTypeRaw());
+    out.putString("usage", source.getUsage());
   }
 
   @NonNull
   public static WritableMap convertPaymentIntentResultToWritableMap(@Nullable PaymentIntentResult paymentIntentResult) {
-    WritableMap wm = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writePaymentIntentResult(sink, paymentIntentResult);
+    return sink.build();
+  }
 
+  public static void writePaymentIntentResult(@NonNull MapSink wm, @Nullable PaymentIntentResult paymentIntentResult) {
     if (paymentIntentResult == null) {
       wm.putString("status", "unknown");
-      return wm;
+      return;
     }
 
     PaymentIntent intent = paymentIntentResult.getIntent();
@@ -253,17 +354,20 @@ public class Converters {
 //    if (paymentMethodId != null) {
 //      wm.putString("paymentMethodId", paymentMethodId);
 //    }
-    return wm;
   }
 
 
   @NonNull
   public static WritableMap convertSetupIntentResultToWritableMap(@Nullable SetupIntentResult setupIntentResult) {
-    WritableMap wm = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeSetupIntentResult(sink, setupIntentResult);
+    return sink.build();
+  }
 
+  public static void writeSetupIntentResult(@NonNull MapSink wm, @Nullable SetupIntentResult setupIntentResult) {
     if (setupIntentResult == null) {
       wm.putString("status", "unknown");
-      return wm;
+      return;
     }
 
     SetupIntent intent = setupIntentResult.getIntent();
@@ -274,35 +378,97 @@ public class Converters {
     if (paymentMethodId != null) {
       wm.putString("paymentMethodId", paymentMethodId);
     }
-    return wm;
+  }
+
+  @NonNull
+  public static WritableMap convertPaymentIntentToWritableMap(@Nullable PaymentIntent intent) {
+    WritableMapSink sink = new WritableMapSink();
+    writePaymentIntent(sink, intent);
+    return sink.build();
+  }
+
+  public static void writePaymentIntent(@NonNull MapSink wm, @Nullable PaymentIntent intent) {
+    if (intent == null) {
+      return;
+    }
+
+    wm.putString("paymentIntentId", intent.getId());
+    wm.putString("status", intent.getStatus().toString());
+    if (intent.getAmount() != null) {
+      wm.putInt("amount", intent.getAmount().intValue());
+    }
+    wm.putString("currency", intent.getCurrency());
+    if (intent.getCreated() != null) {
+      wm.putInt("created", intent.getCreated().intValue());
+    }
+    wm.putBoolean("livemode", intent.isLiveMode());
+    wm.putString("paymentMethodId", intent.getPaymentMethodId());
+    wm.putString("captureMethod", intent.getCaptureMethod());
+    wm.putString("description", intent.getDescription());
+  }
+
+  @NonNull
+  public static WritableMap convertSetupIntentToWritableMap(@Nullable SetupIntent intent) {
+    WritableMapSink sink = new WritableMapSink();
+    writeSetupIntent(sink, intent);
+    return sink.build();
+  }
+
+  public static void writeSetupIntent(@NonNull MapSink wm, @Nullable SetupIntent intent) {
+    if (intent == null) {
+      return;
+    }
+
+    wm.putString("setupIntentId", intent.getId());
+    wm.putString("status", intent.getStatus().toString());
+    wm.putInt("created", (int) intent.getCreated());
+    wm.putBoolean("livemode", intent.isLiveMode());
+    wm.putString("paymentMethodId", intent.getPaymentMethodId());
+    wm.putString("usage", intent.getUsage());
+    wm.putString("description", intent.getDescription());
   }
 
   @NonNull
   public static WritableMap convertPaymentMethodToWritableMap(@Nullable PaymentMethod paymentMethod) {
-    WritableMap wm = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writePaymentMethod(sink, paymentMethod);
+    return sink.build();
+  }
 
+  public static void writePaymentMethod(@NonNull MapSink wm, @Nullable PaymentMethod paymentMethod) {
     if (paymentMethod == null) {
-      return wm;
+      return;
     }
 
     wm.putString("id", paymentMethod.id);
     wm.putInt("created", paymentMethod.created.intValue());
     wm.putBoolean("livemode", paymentMethod.liveMode);
     wm.putString("type", paymentMethod.type);
-    wm.putMap("billingDetails", convertBillingDetailsToWritableMap(paymentMethod.billingDetails));
-    wm.putMap("card", convertPaymentMethodCardToWritableMap(paymentMethod.card));
+    if (wm.wants("billingDetails")) {
+      wm.beginMap("billingDetails");
+      writeBillingDetails(wm, paymentMethod.billingDetails);
+      wm.endMap();
+    }
+    if (wm.wants("card")) {
+      wm.beginMap("card");
+      writePaymentMethodCard(wm, paymentMethod.card);
+      wm.endMap();
+    }
     wm.putString("customerId", paymentMethod.customerId);
 
     // TODO support metadata
-    return wm;
   }
 
   @NonNull
   public static WritableMap convertPaymentMethodCardToWritableMap(@Nullable final PaymentMethod.Card card) {
-    WritableMap wm = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writePaymentMethodCard(sink, card);
+    return sink.build();
+  }
 
+  private static void writePaymentMethodCard(@NonNull MapSink wm, @Nullable final PaymentMethod.Card card) {
     if (card == null) {
-      return wm;
+      return;
     }
 
     // Omitted (can be introduced later): card.checks, card.threeDSecureUsage, card.wallet
@@ -313,66 +479,102 @@ public class Converters {
     wm.putInt("expYear", card.expiryYear);
     wm.putString("funding", card.funding);
     wm.putString("last4", card.last4);
-    return wm;
+  }
+
+  @Nullable
+  public static WritableMap convertBinToWritableMap(@Nullable final BinTable.Bin bin) {
+    if (bin == null) {
+      return null;
+    }
+
+    WritableMap result = Arguments.createMap();
+    result.putString("brand", bin.brand.code);
+    result.putString("funding", bin.funding);
+    result.putInt("panLength", bin.panLength);
+    result.putInt("cvcLength", bin.cvcLength);
+    return result;
   }
 
   @NonNull
   public static WritableMap convertBillingDetailsToWritableMap(@Nullable final PaymentMethod.BillingDetails billingDetails) {
-    WritableMap wm = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeBillingDetails(sink, billingDetails);
+    return sink.build();
+  }
 
+  private static void writeBillingDetails(@NonNull MapSink wm, @Nullable final PaymentMethod.BillingDetails billingDetails) {
     if (billingDetails == null) {
-      return wm;
+      return;
     }
 
-    wm.putMap("address", convertAddressToWritableMap(billingDetails.address));
+    if (wm.wants("address")) {
+      wm.beginMap("address");
+      writeAddress(wm, billingDetails.address);
+      wm.endMap();
+    }
     wm.putString("email", billingDetails.email);
     wm.putString("name", billingDetails.name);
     wm.putString("phone", billingDetails.phone);
-    return wm;
   }
 
 
   @NonNull
   public static WritableMap stringMapToWritableMap(@Nullable Map<String, String> map) {
-    WritableMap writableMap = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeStringMap(sink, map);
+    return sink.build();
+  }
 
+  private static void writeStringMap(@NonNull MapSink out, @Nullable Map<String, String> map) {
     if (map == null) {
-      return writableMap;
+      return;
     }
 
     for (Map.Entry<String, String> entry : map.entrySet()) {
-      writableMap.putString(entry.getKey(), entry.getValue());
+      out.putString(entry.getKey(), entry.getValue());
     }
-
-    return writableMap;
   }
 
   @NonNull
   public static WritableMap convertOwnerToWritableMap(@Nullable final SourceOwner owner) {
-    WritableMap map = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeOwner(sink, owner);
+    return sink.build();
+  }
 
+  private static void writeOwner(@NonNull MapSink map, @Nullable final SourceOwner owner) {
     if (owner == null) {
-      return map;
+      return;
     }
 
-    map.putMap("address", convertAddressToWritableMap(owner.getAddress()));
+    if (map.wants("address")) {
+      map.beginMap("address");
+      writeAddress(map, owner.getAddress());
+      map.endMap();
+    }
     map.putString("email", owner.getEmail());
     map.putString("name", owner.getName());
     map.putString("phone", owner.getPhone());
     map.putString("verifiedEmail", owner.getVerifiedEmail());
     map.putString("verifiedPhone", owner.getVerifiedPhone());
     map.putString("verifiedName", owner.getVerifiedName());
-    map.putMap("verifiedAddress", convertAddressToWritableMap(owner.getVerifiedAddress()));
-
-    return map;
+    if (map.wants("verifiedAddress")) {
+      map.beginMap("verifiedAddress");
+      writeAddress(map, owner.getVerifiedAddress());
+      map.endMap();
+    }
   }
 
   @NonNull
   public static WritableMap convertAddressToWritableMap(@Nullable final Address address) {
-    WritableMap map = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeAddress(sink, address);
+    return sink.build();
+  }
 
+  private static void writeAddress(@NonNull MapSink map, @Nullable final Address address) {
     if (address == null) {
-      return map;
+      return;
     }
 
     map.putString("city", address.getCity());
@@ -381,53 +583,57 @@ public class Converters {
     map.putString("line2", address.getLine2());
     map.putString("postalCode", address.getPostalCode());
     map.putString("state", address.getState());
-
-    return map;
   }
 
   @NonNull
   public static WritableMap convertReceiverToWritableMap(@Nullable final SourceReceiver receiver) {
-    WritableMap map = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeReceiver(sink, receiver);
+    return sink.build();
+  }
 
+  private static void writeReceiver(@NonNull MapSink map, @Nullable final SourceReceiver receiver) {
     if (receiver == null) {
-      return map;
+      return;
     }
 
     map.putInt("amountCharged", (int) receiver.getAmountCharged());
     map.putInt("amountReceived", (int) receiver.getAmountReceived());
     map.putInt("amountReturned", (int) receiver.getAmountReturned());
     map.putString("address", receiver.getAddress());
-
-    return map;
   }
 
   @NonNull
   public static WritableMap convertRedirectToWritableMap(@Nullable SourceRedirect redirect) {
-    WritableMap map = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeRedirect(sink, redirect);
+    return sink.build();
+  }
 
+  private static void writeRedirect(@NonNull MapSink map, @Nullable SourceRedirect redirect) {
     if (redirect == null) {
-      return map;
+      return;
     }
 
     map.putString("returnUrl", redirect.getReturnUrl());
     map.putString("status", redirect.getStatus());
     map.putString("url", redirect.getUrl());
-
-    return map;
   }
 
   @NonNull
   public static WritableMap convertCodeVerificationToWritableMap(@Nullable SourceCodeVerification codeVerification) {
-    WritableMap map = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeCodeVerification(sink, codeVerification);
+    return sink.build();
+  }
 
+  private static void writeCodeVerification(@NonNull MapSink map, @Nullable SourceCodeVerification codeVerification) {
     if (codeVerification == null) {
-      return map;
+      return;
     }
 
     map.putInt("attemptsRemaining", codeVerification.getAttemptsRemaining());
     map.putString("status", codeVerification.getStatus());
-
-    return map;
   }
 
   @NonNull
@@ -445,6 +651,26 @@ public class Converters {
     return writableMap;
   }
 
+  /**
+   * Sink counterpart of {@link #mapToWritableMap}, values of other types are skipped the same way
+   */
+  private static void writeValues(@NonNull MapSink out, @Nullable Map<String, Object> map) {
+    if (map == null) {
+      return;
+    }
+
+    for (Map.Entry<String, Object> entry : map.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Boolean) {
+        out.putBoolean(entry.getKey(), (Boolean) value);
+      } else if (value instanceof Integer || value instanceof Double || value instanceof Float) {
+        out.putDouble(entry.getKey(), ((Number) value).doubleValue());
+      } else if (value instanceof String) {
+        out.putString(entry.getKey(), (String) value);
+      }
+    }
+  }
+
   public static void pushRightTypeToMap(@NonNull WritableMap map, @NonNull String key, @NonNull Object object) {
     Class argumentClass = object.getClass();
     if (argumentClass == Boolean.class) {
@@ -467,9 +693,13 @@ public class Converters {
   }
 
   public static WritableMap convertAddressToWritableMap(final UserAddress address){
-    WritableMap result = Arguments.createMap();
+    WritableMapSink sink = new WritableMapSink();
+    writeUserAddress(sink, address);
+    return sink.build();
+  }
 
-    if (address == null) return result;
+  private static void writeUserAddress(@NonNull MapSink result, @Nullable final UserAddress address) {
+    if (address == null) return;
 
     putIfNotEmpty(result, "address1", address.getAddress1());
     putIfNotEmpty(result, "address2", address.getAddress2());
@@ -484,22 +714,21 @@ public class Converters {
     putIfNotEmpty(result, "phoneNumber", address.getPhoneNumber());
     putIfNotEmpty(result, "postalCode", address.getPostalCode());
     putIfNotEmpty(result, "sortingCode", address.getSortingCode());
-
-    return result;
   }
 
   public static BankAccount createBankAccount(ReadableMap accountData) {
+    ParamSchema.Params params = BANK_ACCOUNT_SCHEMA.read(accountData);
     BankAccount account = new BankAccount(
       // required fields only
-      accountData.getString("accountNumber"),
-      getValue(accountData, "accountHolderName"),
-      getValue(accountData, "accountHolderType"),
+      params.getString("accountNumber"),
+      params.getString("accountHolderName"),
+      params.getString("accountHolderType"),
       null,
-      accountData.getString("countryCode"),
-      accountData.getString("currency"),
+      params.getString("countryCode"),
+      params.getString("currency"),
       null,
       null,
-      getValue(accountData, "routingNumber", "")
+      params.getString("routingNumber", "")
     );
 
     return account;
@@ -523,6 +752,12 @@ public class Converters {
     }
   }
 
+  private static void putIfNotEmpty(final MapSink map, final String key, final String value) {
+    if (!TextUtils.isEmpty(value)) {
+      map.putString(key, value);
+    }
+  }
+
   public static UserAddress getBillingAddress(PaymentData paymentData) {
     if (paymentData != null && paymentData.getCardInfo() != null) {
       return paymentData.getCardInfo().getBillingAddress();
@@ -0,0 +1,81 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keys of a converted object the caller asked for, as given by the {@code fields} call
+ * option. Nested keys are separated by dots, {@code ['status', 'owner.email']} keeps the
+ * status and the owner's email. A key without nested keys keeps its whole branch.
+ */
+public final class FieldMask {
+
+  public static final String KEY = "fields";
+
+  /** Keeps everything, the mask of calls that pass no fields */
+  public static final FieldMask ALL = new FieldMask(null);
+
+  // Null for a mask that keeps everything
+  private final Map<String, FieldMask> children;
+
+  private FieldMask(@Nullable Map<String, FieldMask> children) {
+    this.children = children;
+  }
+
+  @NonNull
+  public static FieldMask from(@Nullable ReadableArray fields) {
+    if (fields == null) {
+      return ALL;
+    }
+
+    Map<String, FieldMask> root = new HashMap<>();
+    for (int i = 0; i < fields.size(); i++) {
+      String path = ArgCheck.notEmptyString(fields.getString(i));
+      add(root, path.split("\\."), 0);
+    }
+    return new FieldMask(root);
+  }
+
+  private static void add(Map<String, FieldMask> children, String[] path, int index) {
+    String key = path[index];
+    FieldMask child = children.get(key);
+    if (index == path.length - 1) {
+      // The whole branch wins over any of its nested keys
+      children.put(key, ALL);
+      return;
+    }
+    if (child == ALL) {
+      return;
+    }
+    if (child == null) {
+      child = new FieldMask(new HashMap<String, FieldMask>());
+      children.put(key, child);
+    }
+    add(child.children, path, index + 1);
+  }
+
+  public boolean isAll() {
+    return children == null;
+  }
+
+  public boolean includes(@NonNull String key) {
+    return children == null || children.containsKey(key);
+  }
+
+  /**
+   * Mask of the nested map under the key, only meaningful if the key is included
+   */
+  @NonNull
+  public FieldMask child(@NonNull String key) {
+    if (children == null) {
+      return ALL;
+    }
+    FieldMask child = children.get(key);
+    return child == null ? new FieldMask(new HashMap<String, FieldMask>()) : child;
+  }
+}
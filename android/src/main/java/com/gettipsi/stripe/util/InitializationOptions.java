@@ -10,5 +10,8 @@ public abstract class InitializationOptions {
   public static final String ANDROID_PAY_MODE_KEY = "androidPayMode";
   public static final String ANDROID_PAY_MODE_PRODUCTION = "production";
   public static final String ANDROID_PAY_MODE_TEST = "test";
+  public static final String WARM_UP = "warmUp";
+  public static final String TIMEOUT_MS = "timeoutMs";
+  public static final String PREPARE_CARD_FORM = "prepareCardForm";
 
 }
@@ -0,0 +1,27 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when params do not match their {@link ParamSchema}, listing every violation found
+ * rather than only the first one. Reported to JS with the {@code invalidParams} code.
+ */
+public final class InvalidParamsException extends IllegalArgumentException {
+
+  private final List<String> violations;
+
+  public InvalidParamsException(@NonNull List<String> violations) {
+    super("Invalid params: " + TextUtils.join("; ", violations));
+    this.violations = Collections.unmodifiableList(new ArrayList<>(violations));
+  }
+
+  @NonNull
+  public List<String> getViolations() {
+    return violations;
+  }
+}
@@ -0,0 +1,164 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Serializes the converted object straight into a JSON string, which crosses the bridge as a
+ * single value instead of one JNI call per key. Each thread reuses its own instance and
+ * buffer through {@link #obtain}.
+ */
+public final class JsonSink implements MapSink {
+
+  // Buffers that grew past this are not kept around for the next conversion
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  private static final ThreadLocal<JsonSink> INSTANCES = new ThreadLocal<JsonSink>() {
+    @Override
+    protected JsonSink initialValue() {
+      return new JsonSink();
+    }
+  };
+
+  private StringBuilder out = new StringBuilder(1024);
+  // Whether the innermost open map already has a key, so the next one needs a comma
+  private boolean[] hasKeys = new boolean[8];
+  private int depth;
+
+  private JsonSink() {}
+
+  /**
+   * @return this thread's sink, emptied and with the root map opened
+   */
+  @NonNull
+  public static JsonSink obtain() {
+    JsonSink sink = INSTANCES.get();
+    sink.reset();
+    return sink;
+  }
+
+  /**
+   * Closes the root map and returns the JSON
+   */
+  @NonNull
+  public String build() {
+    ArgCheck.isTrue(depth == 1, "A nested map was not ended");
+    out.append('}');
+    depth = 0;
+
+    String json = out.toString();
+    if (out.capacity() > MAX_RETAINED_CAPACITY) {
+      out = new StringBuilder(1024);
+    }
+    return json;
+  }
+
+  @Override
+  public boolean wants(@NonNull String key) {
+    return true;
+  }
+
+  @Override
+  public void putString(@NonNull String key, @Nullable String value) {
+    key(key);
+    if (value == null) {
+      out.append("null");
+    } else {
+      string(value);
+    }
+  }
+
+  @Override
+  public void putInt(@NonNull String key, int value) {
+    key(key);
+    out.append(value);
+  }
+
+  @Override
+  public void putDouble(@NonNull String key, double value) {
+    key(key);
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      out.append("null");
+    } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      // Timestamps and amounts, written without a fraction or an exponent
+      out.append((long) value);
+    } else {
+      out.append(value);
+    }
+  }
+
+  @Override
+  public void putBoolean(@NonNull String key, boolean value) {
+    key(key);
+    out.append(value);
+  }
+
+  @Override
+  public void beginMap(@NonNull String key) {
+    key(key);
+    open();
+  }
+
+  @Override
+  public void endMap() {
+    ArgCheck.isTrue(depth > 1, "No nested map to end");
+    out.append('}');
+    depth--;
+  }
+
+  private void reset() {
+    out.setLength(0);
+    depth = 0;
+    open();
+  }
+
+  private void open() {
+    if (depth == hasKeys.length) {
+      boolean[] grown = new boolean[depth * 2];
+      System.arraycopy(hasKeys, 0, grown, 0, depth);
+      hasKeys = grown;
+    }
+    hasKeys[depth++] = false;
+    out.append('{');
+  }
+
+  private void key(String key) {
+    if (hasKeys[depth - 1]) {
+      out.append(',');
+    }
+    hasKeys[depth - 1] = true;
+    string(key);
+    out.append(':');
+  }
+
+  private void string(String value) {
+    out.append('"');
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+      }
+    }
+    out.append('"');
+  }
+}
@@ -0,0 +1,46 @@
+package com.gettipsi.stripe.util;
+
+/**
+ * Smoothed latency and its mean deviation, updated the way TCP estimates round trip times
+ * (RFC 6298): recent samples weigh more, and a deadline of mean plus four deviations stays
+ * clear of normal jitter while still adapting when the network slows down.
+ */
+public final class LatencyEstimator {
+
+  private static final double ALPHA = 1 / 8.0;
+  private static final double BETA = 1 / 4.0;
+  private static final int DEVIATIONS = 4;
+
+  private double meanMs;
+  private double deviationMs;
+  private long samples;
+
+  public synchronized void update(double latencyMs) {
+    if (samples == 0) {
+      meanMs = latencyMs;
+      deviationMs = latencyMs / 2;
+    } else {
+      deviationMs = (1 - BETA) * deviationMs + BETA * Math.abs(meanMs - latencyMs);
+      meanMs = (1 - ALPHA) * meanMs + ALPHA * latencyMs;
+    }
+    samples++;
+  }
+
+  public synchronized long getSamples() {
+    return samples;
+  }
+
+  public synchronized double getMeanMs() {
+    return meanMs;
+  }
+
+  public synchronized long getTimeoutMs() {
+    return (long) Math.ceil(meanMs + DEVIATIONS * deviationMs);
+  }
+
+  public synchronized void reset() {
+    meanMs = 0;
+    deviationMs = 0;
+    samples = 0;
+  }
+}
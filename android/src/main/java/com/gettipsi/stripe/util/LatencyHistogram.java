@@ -0,0 +1,108 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations. Every power of two of microseconds is split
+ * into four buckets, which keeps the relative error of a percentile under 25% with a fixed
+ * footprint of about 1 KB and a couple of atomic increments per sample.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sumMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  public void recordNanos(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+
+    buckets.incrementAndGet(bucketOf(micros));
+    count.incrementAndGet();
+    sumMicros.addAndGet(micros);
+
+    long max;
+    do {
+      max = maxMicros.get();
+    } while (micros > max && !maxMicros.compareAndSet(max, micros));
+  }
+
+  public void recordMillis(long millis) {
+    recordNanos(millis * 1_000_000);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /** Upper bound of the bucket holding the given percentile, in milliseconds */
+  public double getPercentileMs(double percentile) {
+    long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBoundMicros(i), maxMicros.get()) / 1000.0;
+      }
+    }
+    return maxMicros.get() / 1000.0;
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    sumMicros.set(0);
+    maxMicros.set(0);
+  }
+
+  @NonNull
+  public WritableMap toWritableMap() {
+    long total = count.get();
+    WritableMap map = Arguments.createMap();
+    map.putDouble("count", total);
+    map.putDouble("meanMs", total == 0 ? 0 : sumMicros.get() / 1000.0 / total);
+    map.putDouble("p50Ms", getPercentileMs(50));
+    map.putDouble("p90Ms", getPercentileMs(90));
+    map.putDouble("p99Ms", getPercentileMs(99));
+    map.putDouble("maxMs", maxMicros.get() / 1000.0);
+    return map;
+  }
+
+  private static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    int index = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    return Math.min(index, BUCKETS - 1);
+  }
+
+  private static long upperBoundMicros(int index) {
+    if (index < SUB_BUCKETS) {
+      return index + 1;
+    }
+
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+  }
+}
@@ -0,0 +1,27 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Receives a converted object key by key, so that one converter can produce either a
+ * {@code WritableMap} or a serialized JSON string with the same schema. Nested maps are
+ * written between {@link #beginMap} and {@link #endMap}.
+ */
+public interface MapSink {
+
+  /** Whether the key would be kept, so a nested branch is worth building */
+  boolean wants(@NonNull String key);
+
+  void putString(@NonNull String key, @Nullable String value);
+
+  void putInt(@NonNull String key, int value);
+
+  void putDouble(@NonNull String key, double value);
+
+  void putBoolean(@NonNull String key, boolean value);
+
+  void beginMap(@NonNull String key);
+
+  void endMap();
+}
@@ -0,0 +1,81 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes on only the keys a {@link FieldMask} includes. Converters ask {@link #wants} before
+ * building a nested branch, so excluded branches are not even traversed.
+ */
+public final class MaskedSink implements MapSink {
+
+  private final MapSink delegate;
+  private final List<FieldMask> masks = new ArrayList<>();
+  // Depth of nested maps being dropped, they are passed on again once it is back to 0
+  private int skipped;
+
+  public MaskedSink(@NonNull MapSink delegate, @NonNull FieldMask mask) {
+    this.delegate = ArgCheck.nonNull(delegate);
+    masks.add(ArgCheck.nonNull(mask));
+  }
+
+  @Override
+  public boolean wants(@NonNull String key) {
+    return skipped == 0 && current().includes(key);
+  }
+
+  @Override
+  public void putString(@NonNull String key, @Nullable String value) {
+    if (wants(key)) {
+      delegate.putString(key, value);
+    }
+  }
+
+  @Override
+  public void putInt(@NonNull String key, int value) {
+    if (wants(key)) {
+      delegate.putInt(key, value);
+    }
+  }
+
+  @Override
+  public void putDouble(@NonNull String key, double value) {
+    if (wants(key)) {
+      delegate.putDouble(key, value);
+    }
+  }
+
+  @Override
+  public void putBoolean(@NonNull String key, boolean value) {
+    if (wants(key)) {
+      delegate.putBoolean(key, value);
+    }
+  }
+
+  @Override
+  public void beginMap(@NonNull String key) {
+    if (!wants(key)) {
+      skipped++;
+      return;
+    }
+    masks.add(current().child(key));
+    delegate.beginMap(key);
+  }
+
+  @Override
+  public void endMap() {
+    if (skipped > 0) {
+      skipped--;
+      return;
+    }
+    masks.remove(masks.size() - 1);
+    delegate.endMap();
+  }
+
+  private FieldMask current() {
+    return masks.get(masks.size() - 1);
+  }
+}
@@ -0,0 +1,236 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declares the keys a params map may contain, their types and which of them are required.
+ * Schemas are built once and kept in constants. {@link #read} copies the map out of the
+ * bridge in one call, checks every field and throws one {@link InvalidParamsException}
+ * listing all violations, nested maps included. Keys the schema does not know are ignored.
+ */
+public final class ParamSchema {
+
+  private enum Type {
+    STRING("a string"),
+    INT("an integer"),
+    BOOLEAN("a boolean"),
+    MAP("a map"),
+    STRING_MAP("a map of strings");
+
+    final String description;
+
+    Type(String description) {
+      this.description = description;
+    }
+  }
+
+  private static final class Field {
+    final String key;
+    final Type type;
+    final boolean required;
+    @Nullable final ParamSchema nested;
+    // Key whose presence makes a required field optional
+    @Nullable String unless;
+
+    Field(String key, Type type, boolean required, @Nullable ParamSchema nested) {
+      this.key = key;
+      this.type = type;
+      this.required = required;
+      this.nested = nested;
+    }
+  }
+
+  private final List<Field> fields;
+
+  private ParamSchema(List<Field> fields) {
+    this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  @NonNull
+  public Params read(@NonNull ReadableMap map) {
+    ArgCheck.nonNull(map);
+    return read(map.toHashMap());
+  }
+
+  /**
+   * Same as above for a map already copied out of the bridge
+   */
+  @NonNull
+  public Params read(@NonNull Map<String, Object> values) {
+    ArgCheck.nonNull(values);
+
+    List<String> violations = new ArrayList<>();
+    validate(values, "", violations);
+    if (!violations.isEmpty()) {
+      throw new InvalidParamsException(violations);
+    }
+    return new Params(values);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void validate(Map<String, Object> values, String prefix, List<String> violations) {
+    for (Field field : fields) {
+      Object value = values.get(field.key);
+      String path = prefix + field.key;
+
+      if (value == null) {
+        boolean required = field.required && (field.unless == null || values.get(field.unless) == null);
+        if (required) {
+          violations.add(path + " is required");
+        }
+        continue;
+      }
+
+      if (!hasType(value, field.type)) {
+        violations.add(path + " should be " + field.type.description);
+      } else if (field.nested != null) {
+        field.nested.validate((Map<String, Object>) value, path + ".", violations);
+      }
+    }
+  }
+
+  private static boolean hasType(Object value, Type type) {
+    switch (type) {
+      case STRING:
+        return value instanceof String;
+      case INT:
+        if (!(value instanceof Number)) {
+          return false;
+        }
+        double number = ((Number) value).doubleValue();
+        return number == Math.rint(number) && number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE;
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case MAP:
+        return value instanceof Map;
+      case STRING_MAP:
+        if (!(value instanceof Map)) {
+          return false;
+        }
+        for (Object item : ((Map<?, ?>) value).values()) {
+          if (!(item instanceof String)) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  public static final class Builder {
+
+    private final List<Field> fields = new ArrayList<>();
+
+    private Builder() {}
+
+    public Builder requiredString(@NonNull String key) {
+      return add(key, Type.STRING, true, null);
+    }
+
+    public Builder optionalString(@NonNull String key) {
+      return add(key, Type.STRING, false, null);
+    }
+
+    public Builder requiredInt(@NonNull String key) {
+      return add(key, Type.INT, true, null);
+    }
+
+    public Builder optionalInt(@NonNull String key) {
+      return add(key, Type.INT, false, null);
+    }
+
+    public Builder optionalBoolean(@NonNull String key) {
+      return add(key, Type.BOOLEAN, false, null);
+    }
+
+    public Builder optionalMap(@NonNull String key, @NonNull ParamSchema schema) {
+      return add(key, Type.MAP, false, ArgCheck.nonNull(schema));
+    }
+
+    public Builder optionalStringMap(@NonNull String key) {
+      return add(key, Type.STRING_MAP, false, null);
+    }
+
+    /**
+     * Makes the previous required field optional whenever the given key is present
+     */
+    public Builder unless(@NonNull String key) {
+      ArgCheck.isTrue(!fields.isEmpty(), "No field to make optional");
+      fields.get(fields.size() - 1).unless = ArgCheck.nonNull(key);
+      return this;
+    }
+
+    public ParamSchema build() {
+      return new ParamSchema(fields);
+    }
+
+    private Builder add(String key, Type type, boolean required, @Nullable ParamSchema nested) {
+      fields.add(new Field(ArgCheck.notEmptyString(key), type, required, nested));
+      return this;
+    }
+  }
+
+  /**
+   * Values of a map that passed its schema. Getters of keys the schema requires or gives a
+   * default for never fail.
+   */
+  public static final class Params {
+
+    private final Map<String, Object> values;
+
+    private Params(Map<String, Object> values) {
+      this.values = values;
+    }
+
+    public boolean has(@NonNull String key) {
+      return values.get(key) != null;
+    }
+
+    @Nullable
+    public String getString(@NonNull String key) {
+      return (String) values.get(key);
+    }
+
+    public String getString(@NonNull String key, String defaultValue) {
+      String value = getString(key);
+      return value == null ? defaultValue : value;
+    }
+
+    public int getInt(@NonNull String key) {
+      return ((Number) ArgCheck.nonNull(values.get(key), key)).intValue();
+    }
+
+    public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+      Boolean value = (Boolean) values.get(key);
+      return value == null ? defaultValue : value;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public Params getMap(@NonNull String key) {
+      Map<String, Object> value = (Map<String, Object>) values.get(key);
+      return value == null ? null : new Params(value);
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getStringMap(@NonNull String key) {
+      Map<String, String> value = (Map<String, String>) values.get(key);
+      return value == null ? new HashMap<String, String>() : new HashMap<>(value);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stable digest of call parameters. Keys are sorted at every level, so two maps with the same
+ * content hash the same regardless of insertion order. Keys and strings are written as JSON
+ * strings, so no key or value can pass for the separators around it. Only the digest is kept,
+ * never the parameters themselves, which matters for card data.
+ */
+public final class ParamsHash {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private ParamsHash() {}
+
+  @NonNull
+  public static String of(@NonNull String scope, @Nullable ReadableMap params) {
+    return of(scope, params, Collections.<String>emptySet());
+  }
+
+  /**
+   * Same as above, leaving out the given top-level keys, which control how the call is made
+   * rather than what it does
+   */
+  @NonNull
+  public static String of(@NonNull String scope, @Nullable ReadableMap params, @NonNull Collection<String> ignoredKeys) {
+    Map<String, Object> values = null;
+    if (params != null) {
+      values = params.toHashMap();
+      // Underscored keys carry call metadata such as timestamps rather than parameters
+      for (Iterator<String> keys = values.keySet().iterator(); keys.hasNext(); ) {
+        String key = keys.next();
+        if (key.startsWith("_") || ignoredKeys.contains(key)) {
+          keys.remove();
+        }
+      }
+    }
+    return of(scope, values);
+  }
+
+  @VisibleForTesting
+  @NonNull
+  static String of(@NonNull String scope, @Nullable Map<String, Object> values) {
+    StringBuilder canonical = new StringBuilder(scope).append('|');
+    if (values != null) {
+      append(canonical, values);
+    }
+    return sha256(canonical);
+  }
+
+  @NonNull
+  public static String of(@NonNull String scope, @NonNull String... parts) {
+    StringBuilder canonical = new StringBuilder(scope);
+    for (String part : parts) {
+      canonical.append('|').append(part);
+    }
+    return sha256(canonical);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void append(StringBuilder out, @Nullable Object value) {
+    if (value instanceof Map) {
+      out.append('{');
+      for (Map.Entry<String, Object> entry : new TreeMap<>((Map<String, Object>) value).entrySet()) {
+        appendString(out, entry.getKey());
+        out.append(':');
+        append(out, entry.getValue());
+        out.append(',');
+      }
+      out.append('}');
+    } else if (value instanceof List) {
+      out.append('[');
+      for (Object item : (List<Object>) value) {
+        append(out, item);
+        out.append(',');
+      }
+      out.append(']');
+    } else if (value instanceof String) {
+      appendString(out, (String) value);
+    } else {
+      out.append(value);
+    }
+  }
+
+  private static void appendString(StringBuilder out, String value) {
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.append('\\').append(c);
+      } else if (c < 0x20) {
+        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+      } else {
+        out.append(c);
+      }
+    }
+    out.append('"');
+  }
+
+  private static String sha256(StringBuilder canonical) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(canonical.toString().getBytes(UTF_8));
+      canonical.setLength(0);
+
+      char[] hex = new char[hash.length * 2];
+      for (int i = 0; i < hash.length; i++) {
+        hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+        hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+      }
+      return new String(hex);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
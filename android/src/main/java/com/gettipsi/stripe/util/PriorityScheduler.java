@@ -0,0 +1,259 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded worker pool owned by the module. Queued work is ordered by {@link Priority} first
+ * and by submission order within the same priority, so user-facing requests never wait
+ * behind background retrieves, polling or batch imports.
+ *
+ * The module shuts it down with its catalyst instance. Work handed in after that is dropped.
+ */
+public final class PriorityScheduler {
+
+  public enum Priority {
+    /** Confirmations, tokenization and anything the user is actively waiting on */
+    USER_BLOCKING("userBlocking"),
+    DEFAULT("default"),
+    /** Retrieves, polling and bulk work */
+    BACKGROUND("background");
+
+    private final String key;
+
+    Priority(String key) {
+      this.key = key;
+    }
+  }
+
+  public static final int DEFAULT_POOL_SIZE = 4;
+
+  private final ThreadPoolExecutor executor;
+  private final ScheduledThreadPoolExecutor timer;
+  private final AtomicLong sequence = new AtomicLong();
+  private final Lane[] lanes = new Lane[Priority.values().length];
+
+  public PriorityScheduler() {
+    this(DEFAULT_POOL_SIZE);
+  }
+
+  public PriorityScheduler(int poolSize) {
+    ArgCheck.isTrue(poolSize > 0);
+
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new Lane();
+    }
+
+    executor = new ThreadPoolExecutor(
+      poolSize,
+      poolSize,
+      30, TimeUnit.SECONDS,
+      new PriorityBlockingQueue<Runnable>(),
+      new NamedThreadFactory("StripeWorker"),
+      new ThreadPoolExecutor.DiscardPolicy());
+    executor.allowCoreThreadTimeOut(true);
+
+    timer = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("StripeTimer"), new ThreadPoolExecutor.DiscardPolicy());
+  }
+
+  public void execute(@NonNull Priority priority, @NonNull Runnable runnable) {
+    ArgCheck.nonNull(priority);
+    ArgCheck.nonNull(runnable);
+
+    if (executor.isShutdown()) {
+      return;
+    }
+    Task task = new Task(priority, sequence.getAndIncrement(), runnable);
+    lanes[priority.ordinal()].depth.incrementAndGet();
+    executor.execute(task);
+  }
+
+  /**
+   * Enqueues the runnable with the given priority once the delay has passed. The delay is
+   * not counted as queue wait time.
+   */
+  public void schedule(@NonNull final Priority priority, @NonNull final Runnable runnable, long delayMs) {
+    ArgCheck.nonNull(runnable);
+
+    if (delayMs <= 0) {
+      execute(priority, runnable);
+      return;
+    }
+
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        execute(priority, runnable);
+      }
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Wall clock whose timers enqueue their work with the given priority
+   */
+  @NonNull
+  public Clock clock(@NonNull final Priority priority) {
+    ArgCheck.nonNull(priority);
+
+    return new Clock() {
+      @Override
+      public long nowMillis() {
+        return System.currentTimeMillis();
+      }
+
+      @Override
+      public void schedule(@NonNull Runnable runnable, long delayMs) {
+        PriorityScheduler.this.schedule(priority, runnable, delayMs);
+      }
+    };
+  }
+
+  /**
+   * Runs the runnable on the timer thread itself once the delay has passed, so it fires on
+   * time even when every worker is stuck in a request. Meant for short, non-blocking work
+   * such as timing a call out.
+   */
+  @NonNull
+  public ScheduledFuture<?> scheduleOnTimer(@NonNull Runnable runnable, long delayMs) {
+    ArgCheck.nonNull(runnable);
+
+    return timer.schedule(runnable, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the workers and the timer. Queued and delayed work is dropped along with whatever
+   * it holds on to, and work handed in later is ignored.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+    timer.shutdownNow();
+  }
+
+  public boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  public int getQueueDepth(@NonNull Priority priority) {
+    return lanes[priority.ordinal()].depth.get();
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  @NonNull
+  public WritableMap getStats() {
+    WritableMap stats = Arguments.createMap();
+    stats.putInt("queueDepth", getQueueDepth());
+    stats.putInt("activeCount", getActiveCount());
+    stats.putInt("poolSize", executor.getMaximumPoolSize());
+
+    for (Priority priority : Priority.values()) {
+      stats.putMap(priority.key, lanes[priority.ordinal()].toWritableMap());
+    }
+    return stats;
+  }
+
+  public void resetStats() {
+    for (Lane lane : lanes) {
+      lane.reset();
+    }
+  }
+
+  private static final class Lane {
+    final AtomicInteger depth = new AtomicInteger();
+    final AtomicLong executed = new AtomicLong();
+    final AtomicLong totalWaitNanos = new AtomicLong();
+    final AtomicLong maxWaitNanos = new AtomicLong();
+
+    void onStart(long waitNanos) {
+      depth.decrementAndGet();
+      executed.incrementAndGet();
+      totalWaitNanos.addAndGet(waitNanos);
+
+      long max;
+      do {
+        max = maxWaitNanos.get();
+      } while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    void reset() {
+      executed.set(0);
+      totalWaitNanos.set(0);
+      maxWaitNanos.set(0);
+    }
+
+    WritableMap toWritableMap() {
+      long count = executed.get();
+      WritableMap map = Arguments.createMap();
+      map.putInt("queueDepth", depth.get());
+      map.putDouble("executed", count);
+      map.putDouble("averageWaitMs", count == 0 ? 0 : nanosToMillis(totalWaitNanos.get()) / count);
+      map.putDouble("maxWaitMs", nanosToMillis(maxWaitNanos.get()));
+      return map;
+    }
+  }
+
+  private final class Task implements Runnable, Comparable<Task> {
+    private final Priority priority;
+    private final long sequence;
+    private final long enqueuedAt = System.nanoTime();
+    private final Runnable runnable;
+
+    Task(Priority priority, long sequence, Runnable runnable) {
+      this.priority = priority;
+      this.sequence = sequence;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      lanes[priority.ordinal()].onStart(System.nanoTime() - enqueuedAt);
+      runnable.run();
+    }
+
+    @Override
+    public int compareTo(@NonNull Task other) {
+      int byPriority = priority.compareTo(other.priority);
+      if (byPriority != 0) {
+        return byPriority;
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+
+  private static final class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(@NonNull Runnable r) {
+      Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private static double nanosToMillis(long nanos) {
+    return nanos / 1e6;
+  }
+}
@@ -0,0 +1,136 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side limit on the rate of Stripe requests, so that bursts are smoothed out on the
+ * device instead of coming back as {@code RateLimitException}s. Every request needs a token
+ * from the global bucket and, if its method has one, from the method's bucket. A request over
+ * the limit is delayed until both have a token for it, as long as that takes no more than
+ * {@code maxWaitMs}.
+ *
+ * Source status polls take their tokens from the {@code pollSource} bucket, which exists even
+ * when not configured, since polling is what bursts the most. They wait as long as it takes.
+ *
+ * Configured through the {@code rateLimit} init option:
+ * <pre>
+ * {
+ *   global: { capacity: 25, ratePerSecond: 25 },
+ *   methods: { createPaymentMethod: { capacity: 5, ratePerSecond: 2 } },
+ *   maxWaitMs: 2000
+ * }
+ * </pre>
+ */
+public final class RateLimiter {
+
+  public static final String KEY = "rateLimit";
+  public static final String POLL_SOURCE = "pollSource";
+
+  private static final String GLOBAL = "global";
+  private static final String METHODS = "methods";
+  private static final String MAX_WAIT_MS = "maxWaitMs";
+  private static final String CAPACITY = "capacity";
+  private static final String RATE_PER_SECOND = "ratePerSecond";
+
+  private static final double DEFAULT_CAPACITY = 25;
+  private static final double DEFAULT_RATE_PER_SECOND = 25;
+  private static final long DEFAULT_MAX_WAIT_MS = 2000;
+  private static final double DEFAULT_POLL_CAPACITY = 10;
+  private static final double DEFAULT_POLL_RATE_PER_SECOND = 5;
+
+  /** Returned by {@link #acquire} when the request would have to wait longer than allowed */
+  public static final long REJECTED = -1;
+
+  private final TokenBucket global;
+  private final Map<String, TokenBucket> methods;
+  private final long maxWaitNanos;
+
+  public RateLimiter() {
+    this(new TokenBucket(DEFAULT_CAPACITY, DEFAULT_RATE_PER_SECOND, System.nanoTime()),
+      new HashMap<String, TokenBucket>(),
+      DEFAULT_MAX_WAIT_MS);
+  }
+
+  private RateLimiter(@NonNull TokenBucket global, @NonNull Map<String, TokenBucket> methods, long maxWaitMs) {
+    ArgCheck.isTrue(maxWaitMs >= 0, "maxWaitMs should not be negative");
+
+    if (!methods.containsKey(POLL_SOURCE)) {
+      methods.put(POLL_SOURCE, new TokenBucket(DEFAULT_POLL_CAPACITY, DEFAULT_POLL_RATE_PER_SECOND, System.nanoTime()));
+    }
+    this.global = global;
+    this.methods = methods;
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+  }
+
+  @NonNull
+  public static RateLimiter from(@NonNull ReadableMap config) {
+    ArgCheck.nonNull(config);
+
+    long now = System.nanoTime();
+    TokenBucket global = bucketFrom(Converters.getMapOrNull(config, GLOBAL), now);
+
+    Map<String, TokenBucket> methods = new HashMap<>();
+    ReadableMap methodsConfig = Converters.getMapOrNull(config, METHODS);
+    if (methodsConfig != null) {
+      ReadableMapKeySetIterator iterator = methodsConfig.keySetIterator();
+      while (iterator.hasNextKey()) {
+        String method = iterator.nextKey();
+        methods.put(method, bucketFrom(methodsConfig.getMap(method), now));
+      }
+    }
+
+    long maxWaitMs = config.hasKey(MAX_WAIT_MS) ? (long) config.getDouble(MAX_WAIT_MS) : DEFAULT_MAX_WAIT_MS;
+    return new RateLimiter(global, methods, maxWaitMs);
+  }
+
+  private static TokenBucket bucketFrom(@Nullable ReadableMap config, long now) {
+    if (config == null) {
+      return new TokenBucket(DEFAULT_CAPACITY, DEFAULT_RATE_PER_SECOND, now);
+    }
+    return new TokenBucket(
+      config.hasKey(CAPACITY) ? config.getDouble(CAPACITY) : DEFAULT_CAPACITY,
+      config.hasKey(RATE_PER_SECOND) ? config.getDouble(RATE_PER_SECOND) : DEFAULT_RATE_PER_SECOND,
+      now);
+  }
+
+  /**
+   * Reserves a token for a request of the method, waiting at most the configured maximum
+   *
+   * @return nanoseconds the request has to wait before it may go, or {@link #REJECTED}, in
+   * which case nothing is reserved
+   */
+  public long acquire(@NonNull String method) {
+    return acquire(method, maxWaitNanos);
+  }
+
+  /**
+   * Same as above with a bound of the caller's choosing, {@code Long.MAX_VALUE} waits as long
+   * as it takes
+   */
+  public synchronized long acquire(@NonNull String method, long maxWaitNanos) {
+    long now = System.nanoTime();
+    TokenBucket methodBucket = methods.get(method);
+
+    long wait = global.waitNanos(now);
+    if (methodBucket != null) {
+      wait = Math.max(wait, methodBucket.waitNanos(now));
+    }
+    if (wait > maxWaitNanos) {
+      return REJECTED;
+    }
+
+    global.take(now);
+    if (methodBucket != null) {
+      methodBucket.take(now);
+    }
+    return wait;
+  }
+}
@@ -0,0 +1,127 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.stripe.android.exception.APIConnectionException;
+import com.stripe.android.exception.APIException;
+import com.stripe.android.exception.RateLimitException;
+
+import java.util.Random;
+
+/**
+ * Which failed Stripe requests are worth another attempt, and how long to wait before it.
+ *
+ * Requests that only read are retried on connection errors, server errors and rate limiting.
+ * Requests that create objects are only retried when rate limited, because the API turned them
+ * away before doing anything: stripe-android does not let us send idempotency keys, so after
+ * a connection error there is no telling whether the first attempt created the object. Callers
+ * that can live with a duplicate token or payment method may opt in with
+ * {@code retryConnectionErrors}.
+ *
+ * Delays grow exponentially with full jitter. The SDK does not expose response headers, so a
+ * rate limited attempt honors {@code rateLimitDelayMs} as the smallest Retry-After instead.
+ */
+public final class RetryPolicy {
+
+  public static final String KEY = "retry";
+
+  private static final String MAX_ATTEMPTS = "maxAttempts";
+  private static final String INITIAL_DELAY_MS = "initialDelayMs";
+  private static final String MAX_DELAY_MS = "maxDelayMs";
+  private static final String RATE_LIMIT_DELAY_MS = "rateLimitDelayMs";
+  private static final String RETRY_CONNECTION_ERRORS = "retryConnectionErrors";
+
+  public static final RetryPolicy DEFAULT = new RetryPolicy(3, 250, 4000, 1000, false);
+  public static final RetryPolicy NONE = new RetryPolicy(1, 250, 4000, 1000, false);
+
+  private final int maxAttempts;
+  private final long initialDelayMs;
+  private final long maxDelayMs;
+  private final long rateLimitDelayMs;
+  private final boolean retryConnectionErrors;
+
+  public RetryPolicy(int maxAttempts,
+                     long initialDelayMs,
+                     long maxDelayMs,
+                     long rateLimitDelayMs,
+                     boolean retryConnectionErrors) {
+    ArgCheck.isTrue(maxAttempts > 0, "maxAttempts should be positive");
+    ArgCheck.isTrue(initialDelayMs >= 0, "initialDelayMs should not be negative");
+    ArgCheck.isTrue(maxDelayMs >= initialDelayMs, "maxDelayMs should not be less than initialDelayMs");
+    ArgCheck.isTrue(rateLimitDelayMs >= 0, "rateLimitDelayMs should not be negative");
+
+    this.maxAttempts = maxAttempts;
+    this.initialDelayMs = initialDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    this.rateLimitDelayMs = rateLimitDelayMs;
+    this.retryConnectionErrors = retryConnectionErrors;
+  }
+
+  /**
+   * Reads the {@code retry} key of call or init options: {@code false} disables retries, a map
+   * overrides the given defaults field by field.
+   */
+  @NonNull
+  public static RetryPolicy from(@Nullable ReadableMap options, @NonNull RetryPolicy defaults) {
+    ArgCheck.nonNull(defaults);
+
+    if (options == null || !options.hasKey(KEY) || options.isNull(KEY)) {
+      return defaults;
+    }
+
+    switch (options.getType(KEY)) {
+      case Boolean:
+        return options.getBoolean(KEY) ? defaults : NONE;
+      case Map:
+        ReadableMap map = options.getMap(KEY);
+        return new RetryPolicy(
+          map.hasKey(MAX_ATTEMPTS) ? map.getInt(MAX_ATTEMPTS) : defaults.maxAttempts,
+          map.hasKey(INITIAL_DELAY_MS) ? (long) map.getDouble(INITIAL_DELAY_MS) : defaults.initialDelayMs,
+          map.hasKey(MAX_DELAY_MS) ? (long) map.getDouble(MAX_DELAY_MS) : defaults.maxDelayMs,
+          map.hasKey(RATE_LIMIT_DELAY_MS) ? (long) map.getDouble(RATE_LIMIT_DELAY_MS) : defaults.rateLimitDelayMs,
+          Converters.getBooleanOrNull(map, RETRY_CONNECTION_ERRORS, defaults.retryConnectionErrors));
+      default:
+        throw new IllegalArgumentException("retry should be either a boolean or a map");
+    }
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @param attempt number of the attempt that just failed, starting from 1
+   * @param readOnly whether the request only reads, so repeating it is always safe
+   */
+  public boolean shouldRetry(@NonNull Exception e, int attempt, boolean readOnly) {
+    return attempt < maxAttempts && isTransient(e, readOnly);
+  }
+
+  public boolean isTransient(@NonNull Exception e, boolean readOnly) {
+    if (e instanceof RateLimitException) {
+      return true;
+    }
+    if (e instanceof APIConnectionException) {
+      return readOnly || retryConnectionErrors;
+    }
+    if (e instanceof APIException) {
+      Integer statusCode = ((APIException) e).getStatusCode();
+      return readOnly && (statusCode == null || statusCode >= 500);
+    }
+    return false;
+  }
+
+  /**
+   * Delay before the attempt following the given one
+   */
+  public long delayMs(@NonNull Exception e, int attempt, @NonNull Random random) {
+    double backoff = Math.min(maxDelayMs, initialDelayMs * Math.pow(2, attempt - 1));
+    long delay = (long) (random.nextDouble() * backoff);
+    if (e instanceof RateLimitException) {
+      delay = Math.max(delay, rateLimitDelayMs);
+    }
+    return delay;
+  }
+}
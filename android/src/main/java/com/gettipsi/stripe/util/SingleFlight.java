@@ -0,0 +1,78 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent identical calls into one. The first caller for a key becomes the
+ * leader and performs the call, later callers for the same key only wait for its outcome.
+ * The entry is dropped as soon as the call completes, so nothing outlives the call.
+ */
+public final class SingleFlight<K, T> {
+
+  public interface Listener<T> {
+    void onSuccess(T result);
+
+    void onError(Exception e);
+  }
+
+  private final Map<K, List<Listener<T>>> inFlight = new HashMap<>();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * @return true if the caller is the leader and has to perform the call and then report it
+   * through {@link #succeed} or {@link #fail}
+   */
+  public boolean join(@NonNull K key, @NonNull Listener<T> listener) {
+    ArgCheck.nonNull(key);
+    ArgCheck.nonNull(listener);
+
+    synchronized (inFlight) {
+      List<Listener<T>> listeners = inFlight.get(key);
+      if (listeners != null) {
+        listeners.add(listener);
+        coalesced.incrementAndGet();
+        return false;
+      }
+
+      listeners = new ArrayList<>(2);
+      listeners.add(listener);
+      inFlight.put(key, listeners);
+      return true;
+    }
+  }
+
+  public void succeed(@NonNull K key, T result) {
+    for (Listener<T> listener : remove(key)) {
+      listener.onSuccess(result);
+    }
+  }
+
+  public void fail(@NonNull K key, @NonNull Exception e) {
+    for (Listener<T> listener : remove(key)) {
+      listener.onError(e);
+    }
+  }
+
+  /** Number of calls that were served by another call's result */
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  public void resetCoalescedCount() {
+    coalesced.set(0);
+  }
+
+  private List<Listener<T>> remove(K key) {
+    synchronized (inFlight) {
+      List<Listener<T>> listeners = inFlight.remove(key);
+      ArgCheck.nonNull(listeners, "No call in flight");
+      return listeners;
+    }
+  }
+}
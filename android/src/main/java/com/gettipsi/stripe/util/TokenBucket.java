@@ -0,0 +1,44 @@
+package com.gettipsi.stripe.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that hands out reservations instead of refusals: when it is empty, taking a
+ * token puts it in debt, and the returned wait grows with the number of requests already
+ * queued. Not thread safe, {@link RateLimiter} guards it.
+ */
+public final class TokenBucket {
+
+  private final double capacity;
+  private final double tokensPerNano;
+  private double tokens;
+  private long refilledAt;
+
+  public TokenBucket(double capacity, double tokensPerSecond, long nowNanos) {
+    ArgCheck.isTrue(capacity >= 1, "capacity should be at least 1");
+    ArgCheck.isTrue(tokensPerSecond > 0, "ratePerSecond should be positive");
+
+    this.capacity = capacity;
+    this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.tokens = capacity;
+    this.refilledAt = nowNanos;
+  }
+
+  /** How long a request arriving now would wait for its token */
+  public long waitNanos(long nowNanos) {
+    refill(nowNanos);
+    return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  public void take(long nowNanos) {
+    refill(nowNanos);
+    tokens -= 1;
+  }
+
+  private void refill(long nowNanos) {
+    if (nowNanos > refilledAt) {
+      tokens = Math.min(capacity, tokens + (nowNanos - refilledAt) * tokensPerNano);
+      refilledAt = nowNanos;
+    }
+  }
+}
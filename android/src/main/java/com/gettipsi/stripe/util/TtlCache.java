@@ -0,0 +1,96 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory cache whose entries expire after a time to live chosen per entry. Once
+ * full, the least recently used entry makes room for a new one. Expired entries are dropped
+ * when they are looked up, and count as misses.
+ */
+public final class TtlCache<K, V> {
+
+  private static final class Entry<V> {
+    final V value;
+    final long expiresAt;
+
+    Entry(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final Map<K, Entry<V>> entries;
+  private long hits;
+  private long misses;
+
+  public TtlCache(final int maxEntries) {
+    ArgCheck.isTrue(maxEntries > 0, "maxEntries should be positive");
+
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  @Nullable
+  public synchronized V get(@NonNull K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+      entries.remove(key);
+      entry = null;
+    }
+
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  public synchronized void put(@NonNull K key, @NonNull V value, long ttlMs) {
+    ArgCheck.nonNull(key);
+    ArgCheck.nonNull(value);
+
+    if (ttlMs <= 0) {
+      entries.remove(key);
+      return;
+    }
+    entries.put(key, new Entry<>(value, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+  }
+
+  public synchronized void invalidate(@NonNull K key) {
+    entries.remove(key);
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized void resetStats() {
+    hits = 0;
+    misses = 0;
+  }
+
+  /** {@code {size, hits, misses, hitRatio}}, the ratio is 0 before the first lookup */
+  public synchronized WritableMap getStats() {
+    long lookups = hits + misses;
+
+    WritableMap stats = Arguments.createMap();
+    stats.putInt("size", entries.size());
+    stats.putDouble("hits", hits);
+    stats.putDouble("misses", misses);
+    stats.putDouble("hitRatio", lookups == 0 ? 0 : (double) hits / lookups);
+    return stats;
+  }
+}
@@ -9,7 +9,7 @@ import com.stripe.android.model.Card;
 public class Utils {
 
     public static String validateCard(final Card card) {
-        if (!card.validateNumber()) {
+        if (card.getNumber() == null || !CardNumber.of(card.getNumber()).isValid()) {
             return "The card number that you entered is invalid";
         } else if (!card.validateExpiryDate()) {
             return "The expiration date that you entered is invalid";
@@ -0,0 +1,73 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the converted object as a tree of {@link WritableMap}s, the default output
+ */
+public final class WritableMapSink implements MapSink {
+
+  private final List<WritableMap> maps = new ArrayList<>();
+  private final List<String> keys = new ArrayList<>();
+  private final WritableMap root;
+
+  public WritableMapSink() {
+    root = Arguments.createMap();
+    maps.add(root);
+  }
+
+  @NonNull
+  public WritableMap build() {
+    ArgCheck.isTrue(maps.size() == 1, "A nested map was not ended");
+    return root;
+  }
+
+  @Override
+  public boolean wants(@NonNull String key) {
+    return true;
+  }
+
+  @Override
+  public void putString(@NonNull String key, @Nullable String value) {
+    current().putString(key, value);
+  }
+
+  @Override
+  public void putInt(@NonNull String key, int value) {
+    current().putInt(key, value);
+  }
+
+  @Override
+  public void putDouble(@NonNull String key, double value) {
+    current().putDouble(key, value);
+  }
+
+  @Override
+  public void putBoolean(@NonNull String key, boolean value) {
+    current().putBoolean(key, value);
+  }
+
+  @Override
+  public void beginMap(@NonNull String key) {
+    keys.add(key);
+    maps.add(Arguments.createMap());
+  }
+
+  @Override
+  public void endMap() {
+    ArgCheck.isTrue(maps.size() > 1, "No nested map to end");
+    WritableMap map = maps.remove(maps.size() - 1);
+    current().putMap(keys.remove(keys.size() - 1), map);
+  }
+
+  private WritableMap current() {
+    return maps.get(maps.size() - 1);
+  }
+}
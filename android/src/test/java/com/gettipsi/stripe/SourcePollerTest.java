@@ -0,0 +1,289 @@
+package com.gettipsi.stripe;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.gettipsi.stripe.util.RetryPolicy;
+import com.gettipsi.stripe.util.VirtualClock;
+import com.stripe.android.exception.APIConnectionException;
+import com.stripe.android.model.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the poller with a virtual clock and a scripted fake API. Jitter is pinned to its
+ * lower bound, so every delay is half of its backoff.
+ */
+public class SourcePollerTest {
+
+  private VirtualClock clock;
+  private FakeApi api;
+  private RecordingListener listener;
+  private ScriptedThrottle throttle;
+  private SourcePoller.Options options;
+
+  @Before
+  public void setUp() {
+    clock = new VirtualClock();
+    api = new FakeApi();
+    listener = new RecordingListener();
+    throttle = new ScriptedThrottle();
+    options = new SourcePoller.Options();
+    options.initialDelayMs = 1000;
+    options.maxDelayMs = 4000;
+    options.multiplier = 2;
+    options.timeoutMs = 60000;
+  }
+
+  @Test
+  public void pollsWithBackoffUntilTheSourceIsTerminal() {
+    api.respond(source("pending"), source("pending"), source("pending"), source("chargeable"));
+
+    poller().start();
+    clock.runAll();
+
+    assertEquals(4, api.calls);
+    assertEquals(4, listener.statuses.size());
+    assertEquals("chargeable", listener.terminal.getStatus());
+    // Retrieves at 0, 500, 1500 and 3500
+    assertEquals(3500, clock.nowMillis());
+    assertEquals(3500L, (long) listener.elapsed.get(3));
+  }
+
+  @Test
+  public void delaysAreCappedAtMaxDelay() {
+    SourcePoller poller = poller();
+
+    assertEquals(500, poller.nextDelayMs(1));
+    assertEquals(1000, poller.nextDelayMs(2));
+    assertEquals(2000, poller.nextDelayMs(3));
+    assertEquals(2000, poller.nextDelayMs(10));
+  }
+
+  @Test
+  public void jitterStaysBetweenHalfAndAllOfTheBackoff() {
+    Random random = new Random(42);
+    SourcePoller poller = new SourcePoller(clock, random, options, RetryPolicy.DEFAULT, throttle, api, listener);
+
+    for (int attempt = 1; attempt <= 10; attempt++) {
+      long backoff = Math.min(1000L << (attempt - 1), 4000);
+      long delay = poller.nextDelayMs(attempt);
+      assertTrue(delay >= backoff / 2 && delay <= backoff);
+    }
+  }
+
+  @Test
+  public void retriesTransientErrorsWithBackoff() {
+    api.respond(new APIConnectionException("offline"), new APIConnectionException("offline"), source("chargeable"));
+
+    poller().start();
+    clock.runAll();
+
+    assertEquals(3, api.calls);
+    assertNull(listener.error);
+    assertEquals("chargeable", listener.terminal.getStatus());
+    assertEquals(1500, clock.nowMillis());
+  }
+
+  @Test
+  public void failsFastOnOtherErrors() {
+    IllegalStateException failure = new IllegalStateException("broken");
+    api.respond(source("pending"), failure, source("chargeable"));
+
+    poller().start();
+    clock.runAll();
+
+    assertEquals(2, api.calls);
+    assertSame(failure, listener.error);
+    assertNull(listener.terminal);
+  }
+
+  @Test
+  public void reportsTheLastSourceWhenTheDeadlinePasses() {
+    options.timeoutMs = 5000;
+    api.respondForever(source("pending"));
+
+    poller().start();
+    clock.runAll();
+
+    // Retrieves at 0, 500, 1500, 3500 and, instead of 5500, at the deadline
+    assertEquals(5, api.calls);
+    assertEquals("pending", listener.deadlineSource.getStatus());
+    assertEquals(5000, clock.nowMillis());
+  }
+
+  @Test
+  public void retrievesOnceMoreAtTheDeadline() {
+    options.timeoutMs = 5000;
+    api.respond(source("pending"), source("pending"), source("pending"), source("pending"), source("chargeable"));
+
+    poller().start();
+    clock.runAll();
+
+    assertEquals(5, api.calls);
+    assertEquals("chargeable", listener.terminal.getStatus());
+    assertEquals(5000L, (long) listener.elapsed.get(4));
+    assertNull(listener.deadlineSource);
+  }
+
+  @Test
+  public void startAfterCountsTheRetrievedSourceAsTheFirstAttempt() {
+    api.respond(source("chargeable"));
+
+    poller().startAfter(source("pending"));
+    clock.runAll();
+
+    // No retrieve at 0, the next one waits for the first delay
+    assertEquals(1, api.calls);
+    assertEquals(2, listener.statuses.size());
+    assertEquals("chargeable", listener.terminal.getStatus());
+    assertEquals(500, clock.nowMillis());
+  }
+
+  @Test
+  public void reportsTheErrorWhenStillFailingAtTheDeadline() {
+    options.timeoutMs = 5000;
+    APIConnectionException failure = new APIConnectionException("offline");
+    api.respondForever(failure);
+
+    poller().start();
+    clock.runAll();
+
+    assertEquals(5, api.calls);
+    assertSame(failure, listener.error);
+    assertNull(listener.deadlineSource);
+  }
+
+  @Test
+  public void waitsForTheThrottleBeforeRetrieving() {
+    api.respond(source("pending"), source("chargeable"));
+    throttle.waitMs(300, 700);
+
+    poller().start();
+    clock.runAll();
+
+    // Retrieves at 300 and, after the 500 delay and 700 wait, at 1500
+    assertEquals(2, api.calls);
+    assertEquals(2, throttle.reservations);
+    assertEquals("chargeable", listener.terminal.getStatus());
+    assertEquals(1500, clock.nowMillis());
+  }
+
+  @Test
+  public void cancelStopsPolling() {
+    api.respondForever(source("pending"));
+    SourcePoller poller = poller();
+
+    poller.start();
+    clock.advanceBy(600);
+    poller.cancel();
+    clock.runAll();
+
+    assertEquals(2, api.calls);
+    assertEquals(2, listener.statuses.size());
+    assertNull(listener.terminal);
+    assertNull(listener.deadlineSource);
+  }
+
+  private SourcePoller poller() {
+    return new SourcePoller(clock, new LowestJitter(), options, RetryPolicy.DEFAULT, throttle, api, listener);
+  }
+
+  private static Source source(String status) {
+    return Source.fromString("{\"id\":\"src_test\",\"object\":\"source\",\"type\":\"sofort\","
+      + "\"flow\":\"redirect\",\"status\":\"" + status + "\"}");
+  }
+
+  private static final class LowestJitter extends Random {
+    @Override
+    public double nextDouble() {
+      return 0;
+    }
+  }
+
+  /** Makes each reservation wait the next scripted time, then none */
+  private static final class ScriptedThrottle implements SourcePoller.Throttle {
+    private final Deque<Long> waits = new ArrayDeque<>();
+    int reservations;
+
+    void waitMs(long... waits) {
+      for (long wait : waits) {
+        this.waits.add(wait);
+      }
+    }
+
+    @Override
+    public long reserveMs() {
+      reservations++;
+      return waits.isEmpty() ? 0 : waits.poll();
+    }
+  }
+
+  /** Answers each retrieve with the next scripted source or exception */
+  private static final class FakeApi implements SourcePoller.Fetcher {
+    private final Deque<Object> responses = new ArrayDeque<>();
+    private Object forever;
+    int calls;
+
+    void respond(Object... responses) {
+      for (Object response : responses) {
+        this.responses.add(response);
+      }
+    }
+
+    void respondForever(Object response) {
+      forever = response;
+    }
+
+    @Override
+    public Source fetch() throws Exception {
+      calls++;
+      Object response = responses.isEmpty() ? forever : responses.poll();
+      if (response instanceof Exception) {
+        throw (Exception) response;
+      }
+      return (Source) response;
+    }
+  }
+
+  private static final class RecordingListener implements SourcePoller.Listener {
+    final List<Source> statuses = new ArrayList<>();
+    final List<Long> elapsed = new ArrayList<>();
+    Source terminal;
+    Source deadlineSource;
+    Exception error;
+
+    @Override
+    public void onStatus(@NonNull Source source, int attempt, long elapsedMs) {
+      statuses.add(source);
+      elapsed.add(elapsedMs);
+    }
+
+    @Override
+    public void onTerminal(@NonNull Source source) {
+      terminal = source;
+    }
+
+    @Override
+    public void onDeadline(@Nullable Source lastSource) {
+      deadlineSource = lastSource;
+    }
+
+    @Override
+    public void onError(@NonNull Exception e) {
+      error = e;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.gettipsi.stripe.util;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Reads the generated table from the module's resources, unit tests run from the module
+ * directory.
+ */
+public class BinTableTest {
+
+  private static BinTable table;
+
+  @BeforeClass
+  public static void readTable() throws Exception {
+    InputStream in = new FileInputStream("src/main/res/raw/bin_table.bin");
+    try {
+      table = BinTable.read(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void looksUpBrandAndLengths() {
+    BinTable.Bin amex = table.lookup("3782 82");
+    assertEquals(CardNumber.Brand.AMERICAN_EXPRESS, amex.brand);
+    assertEquals(15, amex.panLength);
+    assertEquals(4, amex.cvcLength);
+
+    assertEquals(CardNumber.Brand.MASTERCARD, table.lookup("2720").brand);
+    assertNull(table.lookup("2721"));
+    // Diners Club and American Express both start with 3
+    assertNull(table.lookup("3"));
+  }
+
+  @Test
+  public void agreesWithCardNumberOnEveryPrefix() {
+    for (int digits = 1; digits <= BinTable.INDEX_DIGITS; digits++) {
+      int count = (int) Math.pow(10, digits);
+      for (int value = 0; value < count; value++) {
+        String prefix = String.format("%0" + digits + "d", value);
+        BinTable.Bin bin = table.lookup(prefix);
+        if (bin != null) {
+          CardNumber number = CardNumber.of(prefix);
+          assertEquals(prefix, bin.brand, number.brand());
+          assertEquals(prefix, bin.panLength, bin.brand.length);
+          assertEquals(prefix, bin.cvcLength, bin.brand.cvcLength);
+        }
+      }
+    }
+  }
+}
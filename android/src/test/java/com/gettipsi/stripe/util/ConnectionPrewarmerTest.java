@@ -0,0 +1,148 @@
+package com.gettipsi.stripe.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.security.KeyStore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Warms up against a stand-in HTTPS server on localhost, whose self-signed certificate is in
+ * {@code stand-in.p12} and trusted through the prewarmer's socket factory.
+ */
+public class ConnectionPrewarmerTest {
+
+  private static final char[] PASSWORD = "stand-in".toCharArray();
+
+  private SSLContext sslContext;
+  private SSLServerSocket serverSocket;
+  private Thread serverThread;
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger requests = new AtomicInteger();
+  private volatile String requestLine;
+
+  @Before
+  public void startServer() throws Exception {
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    InputStream in = getClass().getClassLoader().getResourceAsStream("stand-in.p12");
+    try {
+      keyStore.load(in, PASSWORD);
+    } finally {
+      in.close();
+    }
+
+    KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagers.init(keyStore, PASSWORD);
+    TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagers.init(keyStore);
+    sslContext = SSLContext.getInstance("TLS");
+    sslContext.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+
+    serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(0);
+    serverThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            final Socket socket = serverSocket.accept();
+            connections.incrementAndGet();
+            new Thread(new Runnable() {
+              @Override
+              public void run() {
+                serve(socket);
+              }
+            }).start();
+          }
+        } catch (IOException ignored) {
+          // Closed by stopServer
+        }
+      }
+    });
+    serverThread.start();
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    serverSocket.close();
+    serverThread.join();
+  }
+
+  @Test
+  public void warmUpCompletesARequestToTheHost() throws Exception {
+    long durationMs = prewarmer().warmUp();
+
+    assertTrue(durationMs >= 0);
+    assertEquals(1, requests.get());
+    assertEquals("GET /v1/ HTTP/1.1", requestLine);
+  }
+
+  @Test
+  public void warmedUpConnectionIsReused() throws Exception {
+    ConnectionPrewarmer prewarmer = prewarmer();
+    prewarmer.warmUp();
+    prewarmer.warmUp();
+
+    assertEquals(2, requests.get());
+    assertEquals(1, connections.get());
+  }
+
+  @Test(expected = IOException.class)
+  public void warmUpFailsWhenTheCertificateIsNotTrusted() throws Exception {
+    new ConnectionPrewarmer(url(), SSLContext.getDefault().getSocketFactory()).warmUp();
+  }
+
+  private ConnectionPrewarmer prewarmer() throws Exception {
+    return new ConnectionPrewarmer(url(), sslContext.getSocketFactory());
+  }
+
+  private URL url() throws Exception {
+    return new URL("https://localhost:" + serverSocket.getLocalPort() + "/v1/");
+  }
+
+  // Answers every request on the connection like the API does without a key
+  private void serve(Socket socket) {
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+      OutputStream out = socket.getOutputStream();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        requestLine = line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+          // Headers are not needed
+        }
+        requests.incrementAndGet();
+
+        byte[] body = "{\"error\":{\"type\":\"invalid_request_error\"}}".getBytes("UTF-8");
+        out.write(("HTTP/1.1 401 Unauthorized\r\n"
+          + "Content-Type: application/json\r\n"
+          + "Content-Length: " + body.length + "\r\n"
+          + "\r\n").getBytes("UTF-8"));
+        out.write(body);
+        out.flush();
+      }
+    } catch (IOException ignored) {
+      // The client went away
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+}
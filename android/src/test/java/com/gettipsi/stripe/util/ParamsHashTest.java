@@ -0,0 +1,67 @@
+package com.gettipsi.stripe.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ParamsHashTest {
+
+  @Test
+  public void keyOrderDoesNotMatter() {
+    Map<String, Object> first = new LinkedHashMap<>();
+    first.put("a", "b");
+    first.put("c", 1.0);
+    Map<String, Object> second = new LinkedHashMap<>();
+    second.put("c", 1.0);
+    second.put("a", "b");
+
+    assertEquals(ParamsHash.of("scope", first), ParamsHash.of("scope", second));
+  }
+
+  @Test
+  public void keyCannotPassForSeveralEntries() {
+    Map<String, Object> twoKeys = new HashMap<>();
+    twoKeys.put("a", "b");
+    twoKeys.put("c", "d");
+    Map<String, Object> oneKey = new HashMap<>();
+    oneKey.put("a:\"b\",c", "d");
+
+    assertNotEquals(ParamsHash.of("scope", metadata(twoKeys)), ParamsHash.of("scope", metadata(oneKey)));
+  }
+
+  @Test
+  public void backslashesAreEscaped() {
+    Map<String, Object> escapedQuote = new HashMap<>();
+    escapedQuote.put("a", "\\\",\"c\":\"d");
+    Map<String, Object> twoKeys = new HashMap<>();
+    twoKeys.put("a", "\\");
+    twoKeys.put("c", "d");
+
+    assertNotEquals(ParamsHash.of("scope", metadata(escapedQuote)), ParamsHash.of("scope", metadata(twoKeys)));
+  }
+
+  @Test
+  public void stringsDifferFromOtherValues() {
+    Map<String, Object> string = new HashMap<>();
+    string.put("a", "1.0");
+    Map<String, Object> number = new HashMap<>();
+    number.put("a", 1.0);
+    Map<String, Object> list = new HashMap<>();
+    list.put("a", Arrays.<Object>asList(1.0));
+
+    assertNotEquals(ParamsHash.of("scope", string), ParamsHash.of("scope", number));
+    assertNotEquals(ParamsHash.of("scope", number), ParamsHash.of("scope", list));
+  }
+
+  private static Map<String, Object> metadata(Map<String, Object> metadata) {
+    Map<String, Object> params = new HashMap<>();
+    params.put("metadata", metadata);
+    return params;
+  }
+}
@@ -0,0 +1,55 @@
+package com.gettipsi.stripe.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrioritySchedulerTest {
+
+  @Test
+  public void runsWorkUntilShutdown() throws Exception {
+    PriorityScheduler scheduler = new PriorityScheduler(1);
+    final CountDownLatch ran = new CountDownLatch(1);
+
+    scheduler.execute(PriorityScheduler.Priority.DEFAULT, new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    });
+
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void shutdownDropsDelayedAndLaterWork() throws Exception {
+    PriorityScheduler scheduler = new PriorityScheduler(1);
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable count = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    };
+
+    scheduler.schedule(PriorityScheduler.Priority.DEFAULT, count, 50);
+    scheduler.scheduleOnTimer(count, 50);
+    scheduler.shutdown();
+    scheduler.execute(PriorityScheduler.Priority.DEFAULT, count);
+    scheduler.schedule(PriorityScheduler.Priority.DEFAULT, count, 10);
+    ScheduledFuture<?> late = scheduler.scheduleOnTimer(count, 10);
+    late.cancel(false);
+    Thread.sleep(200);
+
+    assertTrue(scheduler.isShutdown());
+    assertEquals(0, runs.get());
+    assertEquals(0, scheduler.getQueueDepth(PriorityScheduler.Priority.DEFAULT));
+  }
+}
@@ -0,0 +1,69 @@
+package com.gettipsi.stripe.util;
+
+import android.support.annotation.NonNull;
+
+import java.util.PriorityQueue;
+
+/**
+ * Clock whose time only moves when a test says so. Scheduled work runs on the test's thread,
+ * in order of due time, as time is advanced past it.
+ */
+public final class VirtualClock implements Clock {
+
+  private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+  private long now;
+  private long sequence;
+
+  @Override
+  public long nowMillis() {
+    return now;
+  }
+
+  @Override
+  public void schedule(@NonNull Runnable runnable, long delayMs) {
+    tasks.add(new Task(now + Math.max(0, delayMs), sequence++, runnable));
+  }
+
+  public void advanceBy(long ms) {
+    long until = now + ms;
+    while (!tasks.isEmpty() && tasks.peek().dueAt <= until) {
+      Task task = tasks.poll();
+      now = task.dueAt;
+      task.runnable.run();
+    }
+    now = until;
+  }
+
+  /** Runs scheduled work until there is none left */
+  public void runAll() {
+    while (!tasks.isEmpty()) {
+      Task task = tasks.poll();
+      now = Math.max(now, task.dueAt);
+      task.runnable.run();
+    }
+  }
+
+  public int getScheduledCount() {
+    return tasks.size();
+  }
+
+  private static final class Task implements Comparable<Task> {
+    final long dueAt;
+    final long sequence;
+    final Runnable runnable;
+
+    Task(long dueAt, long sequence, Runnable runnable) {
+      this.dueAt = dueAt;
+      this.sequence = sequence;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public int compareTo(@NonNull Task other) {
+      if (dueAt != other.dueAt) {
+        return dueAt < other.dueAt ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+#!/usr/bin/env node
+
+// Writes android/src/main/res/raw/bin_table.bin, read by BinTable.java, and
+// android/src/main/java/com/gettipsi/stripe/util/BrandRanges.java, from which CardNumber.java
+// builds its brand prefix trie, so that both agree on every brand.
+// Run it after changing the ranges below: node scripts/build-bin-table.js
+//
+// Layout, all values unsigned bytes:
+//   'B' 'I' 'N' 'T', format version, number of records
+//   records: brand, funding, PAN length, CVC length
+//   for 1 to 4 leading digits, one byte per possible prefix: index of the record every
+//   number with that prefix belongs to, plus one, or 0 when there is none or several
+
+var fs = require('fs');
+var path = require('path');
+
+var ANDROID_MAIN = path.join(__dirname, '..', 'android', 'src', 'main');
+var OUTPUT_PATH = path.join(ANDROID_MAIN, 'res', 'raw', 'bin_table.bin');
+var JAVA_OUTPUT_PATH = path.join(ANDROID_MAIN, 'java', 'com', 'gettipsi', 'stripe', 'util', 'BrandRanges.java');
+var VERSION = 1;
+var INDEX_DIGITS = 4;
+
+// Table codes of CardNumber.Brand, and codes of BinTable.FUNDINGS
+var BRAND = { visa: 0, mastercard: 1, amex: 2, discover: 3, jcb: 4, diners: 5, unionpay: 6 };
+var FUNDING = { unknown: 0, credit: 1, debit: 2, prepaid: 3 };
+
+// Prefixes are single values or inclusive ranges of values with the same number of digits.
+// Every brand has one record.
+var RECORDS = [
+  { brand: BRAND.visa, funding: FUNDING.unknown, panLength: 16, cvcLength: 3, prefixes: ['4'] },
+  {
+    brand: BRAND.mastercard,
+    funding: FUNDING.unknown,
+    panLength: 16,
+    cvcLength: 3,
+    prefixes: ['2221-2720', '50-55', '67'],
+  },
+  { brand: BRAND.amex, funding: FUNDING.unknown, panLength: 15, cvcLength: 4, prefixes: ['34', '37'] },
+  {
+    brand: BRAND.discover,
+    funding: FUNDING.unknown,
+    panLength: 16,
+    cvcLength: 3,
+    prefixes: ['60', '64', '65'],
+  },
+  { brand: BRAND.jcb, funding: FUNDING.unknown, panLength: 16, cvcLength: 3, prefixes: ['35'] },
+  {
+    brand: BRAND.diners,
+    funding: FUNDING.unknown,
+    panLength: 14,
+    cvcLength: 3,
+    prefixes: ['300-305', '309', '36', '38', '39'],
+  },
+  { brand: BRAND.unionpay, funding: FUNDING.unknown, panLength: 16, cvcLength: 3, prefixes: ['62'] },
+];
+
+function pow10(n) {
+  return Math.pow(10, n);
+}
+
+// Record of every INDEX_DIGITS long prefix
+var full = new Array(pow10(INDEX_DIGITS)).fill(0);
+RECORDS.forEach(function(record, index) {
+  record.prefixes.forEach(function(prefix) {
+    var bounds = prefix.split('-');
+    var digits = bounds[0].length;
+    var from = parseInt(bounds[0], 10);
+    var to = parseInt(bounds[bounds.length - 1], 10);
+    var scale = pow10(INDEX_DIGITS - digits);
+    for (var value = from * scale; value < (to + 1) * scale; value++) {
+      if (full[value] !== 0) {
+        throw new Error('Prefix ' + prefix + ' overlaps another one');
+      }
+      full[value] = index + 1;
+    }
+  });
+});
+
+var bytes = [0x42, 0x49, 0x4e, 0x54, VERSION, RECORDS.length];
+RECORDS.forEach(function(record) {
+  bytes.push(record.brand, record.funding, record.panLength, record.cvcLength);
+});
+for (var digits = 1; digits <= INDEX_DIGITS; digits++) {
+  var scale = pow10(INDEX_DIGITS - digits);
+  for (var prefix = 0; prefix < pow10(digits); prefix++) {
+    var entry = full[prefix * scale];
+    for (var i = 1; i < scale && entry !== 0; i++) {
+      if (full[prefix * scale + i] !== entry) {
+        entry = 0;
+      }
+    }
+    bytes.push(entry);
+  }
+}
+
+fs.writeFileSync(OUTPUT_PATH, Buffer.from(bytes));
+console.log('Wrote ' + bytes.length + ' bytes to ' + OUTPUT_PATH);
+
+// Fewest prefixes that cover a range, such as 223 to 229 for 2230-2299
+function coveringPrefixes(prefix) {
+  var bounds = prefix.split('-');
+  var from = parseInt(bounds[0], 10);
+  var to = parseInt(bounds[bounds.length - 1], 10);
+  var prefixes = [];
+  while (from <= to) {
+    var scale = 1;
+    while (from % (scale * 10) === 0 && from + scale * 10 - 1 <= to) {
+      scale *= 10;
+    }
+    prefixes.push(String(from / scale));
+    from += scale;
+  }
+  return prefixes;
+}
+
+var byBrand = [];
+RECORDS.forEach(function(record) {
+  if (byBrand[record.brand]) {
+    throw new Error('Brand ' + record.brand + ' has more than one record');
+  }
+  byBrand[record.brand] = {
+    panLength: record.panLength,
+    cvcLength: record.cvcLength,
+    prefixes: [].concat.apply([], record.prefixes.map(coveringPrefixes)),
+  };
+});
+Object.keys(BRAND).forEach(function(name) {
+  if (!byBrand[BRAND[name]]) {
+    throw new Error('Brand ' + name + ' has no record');
+  }
+});
+
+// Nodes of the trie CardNumber builds, the root included
+var trie = [{}];
+byBrand.forEach(function(brand) {
+  brand.prefixes.forEach(function(prefix) {
+    var node = trie[0];
+    prefix.split('').forEach(function(digit) {
+      if (node[digit] === undefined) {
+        node[digit] = trie.length;
+        trie.push({});
+      }
+      node = trie[node[digit]];
+    });
+  });
+});
+
+function field(name) {
+  return byBrand.map(function(brand) {
+    return brand[name];
+  }).join(', ');
+}
+
+var java = [
+  'package com.gettipsi.stripe.util;',
+  '',
+  '// Generated by scripts/build-bin-table.js from the ranges of res/raw/bin_table.bin, do not edit',
+  '',
+  '/**',
+  ' * Brand ranges of the BIN table, indexed by {@link CardNumber.Brand} table code',
+  ' */',
+  'final class BrandRanges {',
+  '',
+  '  static final int TRIE_NODES = ' + trie.length + ';',
+  '  static final int[] PAN_LENGTHS = { ' + field('panLength') + ' };',
+  '  static final int[] CVC_LENGTHS = { ' + field('cvcLength') + ' };',
+  '  static final String[][] PREFIXES = {',
+].concat(byBrand.map(function(brand, code) {
+  var quoted = brand.prefixes.map(function(prefix) {
+    return '"' + prefix + '"';
+  });
+  var lines = [];
+  for (var i = 0; i < quoted.length; i += 10) {
+    lines.push(quoted.slice(i, i + 10).join(', '));
+  }
+  return '    { ' + lines.join(',\n      ') + ' }' + (code < byBrand.length - 1 ? ',' : '');
+}), [
+  '  };',
+  '',
+  '  private BrandRanges() {}',
+  '}',
+  '',
+]).join('\n');
+
+fs.writeFileSync(JAVA_OUTPUT_PATH, java);
+console.log('Wrote ' + JAVA_OUTPUT_PATH);
@@ -1,6 +1,7 @@
 import { NativeModules, Platform } from 'react-native'
 import checkArgs from './utils/checkArgs'
 import checkInit from './utils/checkInit'
+import parseResult from './utils/parseResult'
 import * as types from './utils/types'
 
 const { StripeModule } = NativeModules
@@ -35,7 +36,7 @@ const deprecatedMethodsForInstance = (instance) => ({
       'options',
       'Stripe.paymentRequestWithAndroidPay'
     )
-    return StripeModule.paymentRequestWithAndroidPay(options)
+    return StripeModule.paymentRequestWithAndroidPay(options).then(parseResult(options))
   },
 
   // @deprecated use paymentRequestWithNativePay
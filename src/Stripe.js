@@ -1,7 +1,8 @@
-import { NativeModules, Platform } from 'react-native'
+import { DeviceEventEmitter, NativeModules, Platform } from 'react-native'
 import processTheme from './utils/processTheme'
 import checkArgs from './utils/checkArgs'
 import checkInit from './utils/checkInit'
+import parseResult from './utils/parseResult'
 import * as types from './utils/types'
 import errorCodes from './errorCodes'
 import deprecatedMethodsForInstance from './Stripe.deprecated'
@@ -140,6 +141,13 @@ import deprecatedMethodsForInstance from './Stripe.deprecated'
 
 const { StripeModule } = NativeModules
 
+const SOURCE_STATUS_EVENT = 'StripeSourceStatusChanged'
+const CIRCUIT_STATE_EVENT = 'StripeCircuitStateChanged'
+
+// Lets the Android module measure how long a call spent crossing the bridge
+const withRequestedAt = (params) =>
+  Platform.OS === 'android' ? { ...params, _requestedAt: Date.now() } : params
+
 class Stripe {
   stripeInitialized = false
 
@@ -161,6 +169,80 @@ class Stripe {
 
   setStripeAccount = (stripeAccount) => StripeModule.setStripeAccount(stripeAccount)
 
+  /**
+   * Opens a connection to the Stripe API ahead of the first request
+   * @returns {Promise<{durationMs: number}>}
+   */
+  prewarm = () =>
+    Platform.select({
+      ios: () => Promise.resolve({ durationMs: 0 }),
+      android: () => StripeModule.prewarm(),
+    })()
+
+  /**
+   * Builds the views of the card form ahead of `paymentRequestWithCardForm`
+   * @returns {Promise<{durationMs: number}>}
+   */
+  prepareCardForm = () =>
+    Platform.select({
+      ios: () => Promise.resolve({ durationMs: 0 }),
+      android: () => StripeModule.prepareCardForm(),
+    })()
+
+  /**
+   * Rejects the pending call started with the given `requestId` option with `requestCancelled`
+   * @param requestId {string}
+   * @returns {Promise<boolean>} whether there was such a call
+   */
+  cancel = (requestId) =>
+    Platform.select({
+      ios: () => Promise.resolve(false),
+      android: () => StripeModule.cancel(requestId),
+    })()
+
+  /**
+   * Latency percentiles by phase and outcome counters for every native call
+   * @returns {Promise<Object>}
+   */
+  getMetricsSnapshot = () =>
+    Platform.select({
+      ios: () => Promise.resolve({ methods: {}, errors: {} }),
+      android: () => StripeModule.getMetricsSnapshot(),
+    })()
+
+  /**
+   * Calls the listener with `{ state, previousState, errorCode }` whenever the circuit breaker
+   * around the Stripe API changes between `closed`, `open` and `halfOpen`
+   * @param listener {Function}
+   * @returns {{remove: Function}}
+   */
+  onCircuitStateChange = (listener) =>
+    Platform.select({
+      ios: () => ({ remove: () => {} }),
+      android: () => DeviceEventEmitter.addListener(CIRCUIT_STATE_EVENT, listener),
+    })()
+
+  resetMetrics = () =>
+    Platform.select({
+      ios: () => Promise.resolve(),
+      android: () => StripeModule.resetMetrics(),
+    })()
+
+  /**
+   * Looks up what the leading digits of a card number tell about the card, synchronously.
+   * Returns null on iOS and when the prefix does not tell. On Android this is a synchronous
+   * native method, which needs React Native 0.45 or greater and is not available while
+   * debugging JS remotely, where it returns null too.
+   * @param prefix {string} first digits of the card number, up to 4 are used
+   * @returns {?{brand: string, funding: string, panLength: number, cvcLength: number}}
+   */
+  lookupBin = (prefix) =>
+    Platform.select({
+      ios: () => null,
+      // Synchronous calls go through nativeCallSyncHook, which remote debuggers lack
+      android: () => (global.nativeCallSyncHook ? StripeModule.lookupBin(prefix) : null),
+    })()
+
   /**
    * Normalizes a card's brand in the format of a short identifier called a 'slug', eg 'amex'
    * @param brand {string|CardBrandSlug|CardBrandPresentableString}
@@ -243,10 +325,12 @@ class Stripe {
       'options',
       'Stripe.paymentRequestWithCardForm'
     )
-    return StripeModule.paymentRequestWithCardForm({
-      ...options,
-      theme: processTheme(options.theme),
-    })
+    return StripeModule.paymentRequestWithCardForm(
+      withRequestedAt({
+        ...options,
+        theme: processTheme(options.theme),
+      })
+    ).then(parseResult(options))
   }
 
   createTokenWithCard = (params = {}) => {
@@ -257,7 +341,7 @@ class Stripe {
       'params',
       'Stripe.createTokenWithCard'
     )
-    return StripeModule.createTokenWithCard(params)
+    return StripeModule.createTokenWithCard(withRequestedAt(params)).then(parseResult(params))
   }
 
   createTokenWithBankAccount = (params = {}) => {
@@ -268,7 +352,46 @@ class Stripe {
       'params',
       'Stripe.createTokenWithBankAccount'
     )
-    return StripeModule.createTokenWithBankAccount(params)
+    return StripeModule.createTokenWithBankAccount(withRequestedAt(params)).then(
+      parseResult(params)
+    )
+  }
+
+  /**
+   * Tokenizes many cards and bank accounts with a single native call.
+   * Each item is either `{ card }` or `{ bankAccount }`, each result is either `{ token }` or `{ error }`.
+   * Android runs up to `concurrency` requests at once, 3 by default. One worker is always left
+   * to other calls, so a `concurrency` above 3 is rejected with `invalidParams`
+   * @param items {Array<Object>}
+   * @param options {{concurrency: number}}
+   * @returns {Promise<Array<Object>>}
+   */
+  createTokensBatch = (items = [], options = {}) => {
+    checkInit(this)
+    items.forEach((item) =>
+      checkArgs(types.createTokensBatchItemPropTypes, item, 'item', 'Stripe.createTokensBatch')
+    )
+    checkArgs(
+      types.createTokensBatchOptionsPropTypes,
+      options,
+      'options',
+      'Stripe.createTokensBatch'
+    )
+    return Platform.select({
+      ios: () =>
+        Promise.all(
+          items.map(({ card, bankAccount }) =>
+            (card
+              ? StripeModule.createTokenWithCard(card)
+              : StripeModule.createTokenWithBankAccount(bankAccount)
+            ).then(
+              (token) => ({ token }),
+              (error) => ({ error: { code: error.code, message: error.message } })
+            )
+          )
+        ),
+      android: () => StripeModule.createTokensBatch(items, withRequestedAt(options)),
+    })()
   }
 
   createSourceWithParams = (params = {}) => {
@@ -279,7 +402,109 @@ class Stripe {
       'params',
       'Stripe.createSourceWithParams'
     )
-    return StripeModule.createSourceWithParams(params)
+    return StripeModule.createSourceWithParams(withRequestedAt(params)).then(parseResult(params))
+  }
+
+  /**
+   * Polls a source until it leaves `pending`, with exponential backoff and jitter.
+   * Connection errors, rate limits and server errors are retried on the same schedule.
+   * `onStatus` is called with `{ sourceId, status, attempt, elapsedMs, source }` for every retrieve
+   * @param sourceId {string}
+   * @param clientSecret {string}
+   * @param options {{initialDelayMs: number, maxDelayMs: number, multiplier: number, pollTimeoutMs: number, onStatus: Function}}
+   * @returns {Promise<Object>} the source once its status is terminal
+   */
+  awaitSourceStatus = (sourceId, clientSecret, options = {}) => {
+    checkInit(this)
+    checkArgs(
+      types.awaitSourceStatusOptionsPropTypes,
+      options,
+      'options',
+      'Stripe.awaitSourceStatus'
+    )
+    const { onStatus, ...pollOptions } = options
+    return Platform.select({
+      ios: () => Promise.reject(new Error('awaitSourceStatus is only available on Android')),
+      android: () => {
+        const subscription =
+          onStatus &&
+          DeviceEventEmitter.addListener(SOURCE_STATUS_EVENT, (event) => {
+            if (event.sourceId === sourceId) {
+              onStatus(event)
+            }
+          })
+        const unsubscribe = () => subscription && subscription.remove()
+        return StripeModule.awaitSourceStatus(
+          sourceId,
+          clientSecret,
+          withRequestedAt(pollOptions)
+        ).then(
+          (source) => {
+            unsubscribe()
+            return parseResult(options)(source)
+          },
+          (error) => {
+            unsubscribe()
+            throw error
+          }
+        )
+      },
+    })()
+  }
+
+  /**
+   * Android Only: resolves from a short-lived cache when the source was retrieved recently
+   * @param sourceId {string}
+   * @param clientSecret {string}
+   * @param options {{refresh: boolean, stripeAccount: string}}
+   * @returns {Promise<Object>}
+   */
+  retrieveSource = (sourceId, clientSecret, options = {}) => {
+    checkInit(this)
+    checkArgs(types.retrieveOptionsPropTypes, options, 'options', 'Stripe.retrieveSource')
+    return Platform.select({
+      ios: () => Promise.reject(new Error('retrieveSource is only available on Android')),
+      android: () =>
+        StripeModule.retrieveSource(sourceId, clientSecret, withRequestedAt(options)).then(
+          parseResult(options)
+        ),
+    })()
+  }
+
+  /**
+   * Android Only: resolves with `{ paymentIntentId, status, amount, currency, ... }`
+   * @param clientSecret {string}
+   * @param options {{refresh: boolean, stripeAccount: string}}
+   * @returns {Promise<Object>}
+   */
+  retrievePaymentIntent = (clientSecret, options = {}) => {
+    checkInit(this)
+    checkArgs(types.retrieveOptionsPropTypes, options, 'options', 'Stripe.retrievePaymentIntent')
+    return Platform.select({
+      ios: () => Promise.reject(new Error('retrievePaymentIntent is only available on Android')),
+      android: () =>
+        StripeModule.retrievePaymentIntent(clientSecret, withRequestedAt(options)).then(
+          parseResult(options)
+        ),
+    })()
+  }
+
+  /**
+   * Android Only: resolves with `{ setupIntentId, status, paymentMethodId, ... }`
+   * @param clientSecret {string}
+   * @param options {{refresh: boolean, stripeAccount: string}}
+   * @returns {Promise<Object>}
+   */
+  retrieveSetupIntent = (clientSecret, options = {}) => {
+    checkInit(this)
+    checkArgs(types.retrieveOptionsPropTypes, options, 'options', 'Stripe.retrieveSetupIntent')
+    return Platform.select({
+      ios: () => Promise.reject(new Error('retrieveSetupIntent is only available on Android')),
+      android: () =>
+        StripeModule.retrieveSetupIntent(clientSecret, withRequestedAt(options)).then(
+          parseResult(options)
+        ),
+    })()
   }
 
   /**
@@ -290,7 +515,7 @@ class Stripe {
   createPaymentMethod = (params = {}) => {
     checkInit(this)
     checkArgs(types.createPaymentMethodPropType, params, 'params', 'Stripe.createPaymentMethod')
-    return StripeModule.createPaymentMethod(params)
+    return StripeModule.createPaymentMethod(withRequestedAt(params)).then(parseResult(params))
   }
 
   /**
@@ -301,7 +526,7 @@ class Stripe {
   confirmPaymentIntent = (params = {}) => {
     checkInit(this)
     checkArgs(types.confirmPaymentIntentPropType, params, 'params', 'Stripe.confirmPaymentIntent')
-    return StripeModule.confirmPaymentIntent(params)
+    return StripeModule.confirmPaymentIntent(withRequestedAt(params)).then(parseResult(params))
   }
 
   /**
@@ -316,7 +541,7 @@ class Stripe {
       'params',
       'Stripe.authenticatePaymentIntent'
     )
-    return StripeModule.authenticatePaymentIntent(params)
+    return StripeModule.authenticatePaymentIntent(withRequestedAt(params)).then(parseResult(params))
   }
 
   /**
@@ -326,7 +551,7 @@ class Stripe {
   confirmSetupIntent = (params = {}) => {
     checkInit(this)
     checkArgs(types.confirmSetupIntentPropType, params, 'params', 'Stripe.confirmSetupIntent')
-    return StripeModule.confirmSetupIntent(params)
+    return StripeModule.confirmSetupIntent(withRequestedAt(params)).then(parseResult(params))
   }
 
   /**
@@ -347,7 +572,7 @@ class Stripe {
       'params',
       'Stripe.authenticateSetupIntent'
     )
-    return StripeModule.authenticateSetupIntent(params)
+    return StripeModule.authenticateSetupIntent(params).then(parseResult(params))
   }
   */
 }
@@ -30,6 +30,12 @@ const FieldStylePropType = PropTypes.shape({
  * @typedef {Object} PaymentCardTextFieldNativeEvent
  * @property {boolean}  valid
  * @property {PaymentCardTextFieldNativeEventParams} params
+ * @property {string}  brand Android-only! Brand told by the leading digits, e.g. "Visa" or "Unknown"
+ * @property {number}  numberLength Android-only! Number of digits entered
+ * @property {boolean}  numberValid Android-only! Whether the number alone is complete and valid
+ * @property {string}  [funding] Android-only! Funding of the card, missing while the brand is unknown
+ * @property {number}  [expectedNumberLength] Android-only! Length of numbers of the brand
+ * @property {number}  [cvcLength] Android-only! Length of the CVC of the brand
  */
 
 /**
@@ -63,6 +69,8 @@ const FieldStylePropType = PropTypes.shape({
  * @property {string} cardNumber Android-only!
  * @property {string} expDate Android-only!
  * @property {string} securityCode Android-only!
+ * @property {number} changeThrottleMs Android-only!
+ * @property {boolean} changeOnValidityOnly Android-only!
  */
 
 const NativePaymentCardTextField = requireNativeComponent('TPSCardField', PaymentCardTextField, {
@@ -110,6 +118,8 @@ export default class PaymentCardTextField extends Component {
         cardNumber: PropTypes.string,
         expDate: PropTypes.string,
         securityCode: PropTypes.string,
+        changeThrottleMs: PropTypes.number,
+        changeOnValidityOnly: PropTypes.bool,
       },
     }),
   }
@@ -179,6 +189,8 @@ export default class PaymentCardTextField extends Component {
       expDate,
       cardNumber,
       securityCode,
+      changeThrottleMs,
+      changeOnValidityOnly,
       cursorColor,
       textErrorColor,
       placeholderColor,
@@ -250,6 +262,8 @@ export default class PaymentCardTextField extends Component {
             cardNumber={cardNumber}
             expDate={expDate}
             securityCode={securityCode}
+            changeThrottleMs={changeThrottleMs}
+            changeOnValidityOnly={changeOnValidityOnly}
           />
         </TouchableWithoutFeedback>
       </View>
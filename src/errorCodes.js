@@ -80,6 +80,22 @@ const errorCodes = {
     errorCode: 'redirectFailed',
     description: 'Source redirect failed',
   },
+  timeout: {
+    errorCode: 'timeout',
+    description: 'The operation did not complete in time',
+  },
+  requestCancelled: {
+    errorCode: 'requestCancelled',
+    description: 'The request was cancelled',
+  },
+  circuitOpen: {
+    errorCode: 'circuitOpen',
+    description: 'The Stripe API is unavailable, requests fail fast until it recovers',
+  },
+  invalidParams: {
+    errorCode: 'invalidParams',
+    description: 'Params are missing required fields or have fields of the wrong type',
+  },
 
   // Description provided by stripe api
   api: {
@@ -15,6 +15,11 @@ import {
   paymentRequestWithCardFormOptionsPropTypes,
   createTokenWithCardParamsPropTypes,
   createTokenWithBankAccountParamsPropTypes,
+  createTokensBatchItemPropTypes,
+  createTokensBatchOptionsPropTypes,
+  callOptionsPropTypes,
+  awaitSourceStatusOptionsPropTypes,
+  retrieveOptionsPropTypes,
   androidPayLineItemPropTypes,
   paymentRequestWithAndroidPayOptionsPropTypes,
   availableSourceTypes,
@@ -28,9 +33,35 @@ test('setOptionsOptionsPropTypes', (t) => {
     publishableKey: 'publishableKey',
     merchantId: 'merchantId',
     androidPayMode: 'development',
+    warmUp: true,
+    timeoutMs: 15000,
+    retry: { maxAttempts: 2 },
+    rateLimit: {
+      global: { capacity: 25, ratePerSecond: 25 },
+      methods: { createPaymentMethod: { capacity: 5, ratePerSecond: 2 } },
+      maxWaitMs: 2000,
+    },
+    circuitBreaker: {
+      windowMs: 10000,
+      minRequests: 10,
+      openMs: 30000,
+      errorRates: { apiConnection: 0.5, api: 0.5 },
+    },
+    retrieveCache: { maxEntries: 50, pendingTtlMs: 1000, terminalTtlMs: 600000 },
+    cardFieldPool: 2,
+    prepareCardForm: true,
   }
 
   t.doesNotThrow(checkPropTypes(setOptionsOptionsPropTypes, passedProps))
+  t.throws(
+    checkPropTypes(setOptionsOptionsPropTypes, { rateLimit: { global: { capacity: 'all' } } })
+  )
+  t.doesNotThrow(checkPropTypes(setOptionsOptionsPropTypes, { circuitBreaker: false }))
+  t.throws(
+    checkPropTypes(setOptionsOptionsPropTypes, { circuitBreaker: { errorRates: { api: 'half' } } })
+  )
+  t.throws(checkPropTypes(setOptionsOptionsPropTypes, { cardFieldPool: true }))
+  t.throws(checkPropTypes(setOptionsOptionsPropTypes, { prepareCardForm: 1 }))
 
   t.end()
 })
@@ -244,6 +275,7 @@ test('createTokenWithCardParamsPropTypes', (t) => {
     last4: 'last4',
     fingerprint: 'fingerprint',
     funding: 'funding',
+    stripeAccount: 'acct_1032D82eZvKYlo2C',
   }
 
   t.doesNotThrow(checkPropTypes(createTokenWithCardParamsPropTypes, passedProps))
@@ -270,6 +302,77 @@ test('createTokenWithBankAccountParamsPropTypes', (t) => {
   t.end()
 })
 
+test('createTokensBatchItemPropTypes', (t) => {
+  const card = {
+    number: 'number',
+    expMonth: 11,
+    expYear: 20,
+  }
+  const bankAccount = {
+    accountNumber: 'accountNumber',
+    countryCode: 'countryCode',
+    currency: 'currency',
+  }
+
+  t.doesNotThrow(checkPropTypes(createTokensBatchItemPropTypes, { card }))
+  t.doesNotThrow(checkPropTypes(createTokensBatchItemPropTypes, { bankAccount }))
+  t.throws(checkPropTypes(createTokensBatchItemPropTypes, { card: { number: 'number' } }))
+
+  t.end()
+})
+
+test('createTokensBatchOptionsPropTypes', (t) => {
+  t.doesNotThrow(checkPropTypes(createTokensBatchOptionsPropTypes, { concurrency: 4 }))
+  t.throws(checkPropTypes(createTokensBatchOptionsPropTypes, { concurrency: 'four' }))
+
+  t.end()
+})
+
+test('callOptionsPropTypes', (t) => {
+  const passedProps = {
+    timeoutMs: 10000,
+    requestId: 'checkout-1',
+    adaptiveTimeout: true,
+    retry: { maxAttempts: 5, initialDelayMs: 100, retryConnectionErrors: true },
+  }
+
+  t.doesNotThrow(checkPropTypes(callOptionsPropTypes, passedProps))
+  t.doesNotThrow(checkPropTypes(callOptionsPropTypes, { retry: false }))
+  t.throws(checkPropTypes(callOptionsPropTypes, { retry: 3 }))
+  t.doesNotThrow(checkPropTypes(createTokensBatchOptionsPropTypes, passedProps))
+  t.throws(checkPropTypes(callOptionsPropTypes, { requestId: 1 }))
+
+  t.end()
+})
+
+test('awaitSourceStatusOptionsPropTypes', (t) => {
+  const passedProps = {
+    initialDelayMs: 500,
+    maxDelayMs: 4000,
+    multiplier: 1.5,
+    pollTimeoutMs: 30000,
+    onStatus: () => {},
+  }
+
+  t.doesNotThrow(checkPropTypes(awaitSourceStatusOptionsPropTypes, passedProps))
+  t.throws(checkPropTypes(awaitSourceStatusOptionsPropTypes, { pollTimeoutMs: '30s' }))
+
+  t.end()
+})
+
+test('retrieveOptionsPropTypes', (t) => {
+  t.doesNotThrow(checkPropTypes(retrieveOptionsPropTypes, { refresh: true, stripeAccount: 'acct' }))
+  t.doesNotThrow(checkPropTypes(retrieveOptionsPropTypes, { resultFormat: 'json' }))
+  t.doesNotThrow(
+    checkPropTypes(retrieveOptionsPropTypes, { fields: ['sourceId', 'status', 'owner.email'] })
+  )
+  t.throws(checkPropTypes(retrieveOptionsPropTypes, { fields: 'status' }))
+  t.throws(checkPropTypes(retrieveOptionsPropTypes, { refresh: 'always' }))
+  t.throws(checkPropTypes(retrieveOptionsPropTypes, { resultFormat: 'xml' }))
+
+  t.end()
+})
+
 test('androidPayLineItemPropTypes', (t) => {
   const passedProps = {
     currency_code: 'currency_code',
@@ -334,6 +437,7 @@ test('createSourceWithParamsPropType', (t) => {
       funding: 'funding',
       id: 'id',
       last4: 'last4',
+      stripeAccount: 'acct_1032D82eZvKYlo2C',
     }
 
     t.doesNotThrow(
@@ -0,0 +1,5 @@
+// Results requested with `resultFormat: 'json'` cross the bridge as a single string
+export default function parseResult(options) {
+  return (result) =>
+    options.resultFormat === 'json' && typeof result === 'string' ? JSON.parse(result) : result
+}
@@ -72,10 +72,93 @@ export const exactPresentableBrandStrings = new Set(
   Object.values(brandToPresentableBrandStringMapping)
 )
 
+// Android Only: `false` turns retries off, a shape overrides the defaults
+export const retryPropTypes = PropTypes.oneOfType([
+  PropTypes.bool,
+  PropTypes.shape({
+    maxAttempts: PropTypes.number,
+    initialDelayMs: PropTypes.number,
+    maxDelayMs: PropTypes.number,
+    rateLimitDelayMs: PropTypes.number,
+    // Retries creations after connection errors too, which may create duplicates
+    retryConnectionErrors: PropTypes.bool,
+  }),
+])
+
+const rateLimitBucketPropTypes = PropTypes.shape({
+  capacity: PropTypes.number,
+  ratePerSecond: PropTypes.number,
+})
+
+// Android Only: client-side token buckets, requests over the limit wait up to maxWaitMs
+// methods.pollSource, 10 at 5 per second unless set, limits source status polls, which wait as
+// long as it takes
+export const rateLimitPropTypes = PropTypes.shape({
+  global: rateLimitBucketPropTypes,
+  methods: PropTypes.objectOf(rateLimitBucketPropTypes),
+  maxWaitMs: PropTypes.number,
+})
+
+// Android Only: `false` turns the breaker off. errorRates maps error codes to the share of
+// requests within windowMs that opens it
+export const circuitBreakerPropTypes = PropTypes.oneOfType([
+  PropTypes.bool,
+  PropTypes.shape({
+    windowMs: PropTypes.number,
+    minRequests: PropTypes.number,
+    openMs: PropTypes.number,
+    errorRates: PropTypes.objectOf(PropTypes.number),
+  }),
+])
+
+// Android Only: `false` turns caching off. Objects that can still change are kept for
+// pendingTtlMs, objects in a final status for terminalTtlMs
+export const retrieveCachePropTypes = PropTypes.oneOfType([
+  PropTypes.bool,
+  PropTypes.shape({
+    maxEntries: PropTypes.number,
+    pendingTtlMs: PropTypes.number,
+    terminalTtlMs: PropTypes.number,
+  }),
+])
+
 export const setOptionsOptionsPropTypes = {
   publishableKey: PropTypes.string,
   merchantId: PropTypes.string,
   androidPayMode: PropTypes.string,
+  // Android Only: open a connection to the Stripe API right after init
+  warmUp: PropTypes.bool,
+  // Android Only: default timeoutMs of the calls that do not wait for the user
+  timeoutMs: PropTypes.number,
+  // Android Only: default retry policy of the calls
+  retry: retryPropTypes,
+  rateLimit: rateLimitPropTypes,
+  circuitBreaker: circuitBreakerPropTypes,
+  retrieveCache: retrieveCachePropTypes,
+  // Android Only: number of card fields to build ahead of time for PaymentCardTextField
+  cardFieldPool: PropTypes.number,
+  // Android Only: build the card form ahead of paymentRequestWithCardForm, and again after each use
+  prepareCardForm: PropTypes.bool,
+}
+
+// Android Only: accepted by every call that takes params or options
+export const callOptionsPropTypes = {
+  // Rejects the call with `timeout` once it has been running that long
+  timeoutMs: PropTypes.number,
+  // Lets `Stripe.cancel(requestId)` reject the call with `requestCancelled`
+  requestId: PropTypes.string,
+  // Derives the deadline from the method's observed latency, capped by timeoutMs
+  adaptiveTimeout: PropTypes.bool,
+  // Retries transient failures, results of retried calls carry `retryInfo: { attempts, exhausted }`
+  retry: retryPropTypes,
+}
+
+// Android Only: accepted by every call that resolves with a Stripe object
+export const resultOptionsPropTypes = {
+  // `json` serializes the result natively and parses it once in JS instead of building a map
+  resultFormat: PropTypes.oneOf(['map', 'json']),
+  // Keys to return, nested ones with dots such as 'owner.email'; others are not even built
+  fields: PropTypes.arrayOf(PropTypes.string),
 }
 
 export const availableApplePayNetworkPropTypes = PropTypes.oneOf(availableApplePayNetworks)
@@ -119,6 +202,8 @@ export const paymentRequestWithApplePayOptionsPropTypes = {
 }
 
 export const paymentRequestWithCardFormOptionsPropTypes = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   requiredBillingAddressFields: PropTypes.oneOf(['full', 'name', 'zip']),
   smsAutofillDisabled: PropTypes.bool,
   prefilledInformation: PropTypes.shape({
@@ -147,6 +232,8 @@ export const paymentRequestWithCardFormOptionsPropTypes = {
 }
 
 export const createTokenWithCardParamsPropTypes = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   number: PropTypes.string.isRequired,
   expMonth: PropTypes.number.isRequired,
   expYear: PropTypes.number.isRequired,
@@ -166,9 +253,12 @@ export const createTokenWithCardParamsPropTypes = {
   last4: PropTypes.string,
   fingerprint: PropTypes.string,
   funding: PropTypes.string,
+  stripeAccount: PropTypes.string,
 }
 
 export const createTokenWithBankAccountParamsPropTypes = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   accountNumber: PropTypes.string.isRequired,
   countryCode: PropTypes.string.isRequired,
   currency: PropTypes.string.isRequired,
@@ -177,6 +267,37 @@ export const createTokenWithBankAccountParamsPropTypes = {
   accountHolderType: PropTypes.oneOf(['company', 'individual']),
 }
 
+export const createTokensBatchItemPropTypes = {
+  card: PropTypes.shape(createTokenWithCardParamsPropTypes),
+  bankAccount: PropTypes.shape(createTokenWithBankAccountParamsPropTypes),
+}
+
+export const createTokensBatchOptionsPropTypes = {
+  ...callOptionsPropTypes,
+  // Android Only: 1 to 3, larger values are rejected with invalidParams
+  concurrency: PropTypes.number,
+}
+
+export const awaitSourceStatusOptionsPropTypes = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
+  initialDelayMs: PropTypes.number,
+  maxDelayMs: PropTypes.number,
+  multiplier: PropTypes.number,
+  // How long to keep polling, timeoutMs bounds the whole call as for any other method
+  pollTimeoutMs: PropTypes.number,
+  onStatus: PropTypes.func,
+  stripeAccount: PropTypes.string,
+}
+
+export const retrieveOptionsPropTypes = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
+  // Skips the cache, the fresh result replaces the cached one
+  refresh: PropTypes.bool,
+  stripeAccount: PropTypes.string,
+}
+
 export const androidPayLineItemPropTypes = {
   currency_code: PropTypes.string.isRequired,
   total_price: PropTypes.string.isRequired,
@@ -186,6 +307,8 @@ export const androidPayLineItemPropTypes = {
 }
 
 export const paymentRequestWithAndroidPayOptionsPropTypes = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   total_price: PropTypes.string.isRequired,
   currency_code: PropTypes.string.isRequired,
   line_items: PropTypes.arrayOf(PropTypes.shape(androidPayLineItemPropTypes)).isRequired,
@@ -195,6 +318,8 @@ export const paymentRequestWithAndroidPayOptionsPropTypes = {
 }
 
 export const createSourceWithParamsPropType = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   type: PropTypes.oneOf(availableSourceTypes).isRequired,
   amount: PropTypes.number,
   name: PropTypes.string,
@@ -223,10 +348,15 @@ export const createSourceWithParamsPropType = {
   funding: PropTypes.string,
   id: PropTypes.string,
   last4: PropTypes.string,
+
+  // Android Only
+  stripeAccount: PropTypes.string,
 }
 
 // Corresponds to https://stripe.com/docs/api/payment_methods/create
 export const createPaymentMethodPropType = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   // BillingDetails properties:
   billingDetails: PropTypes.shape({
     address: PropTypes.shape({
@@ -258,9 +388,14 @@ export const createPaymentMethodPropType = {
   // TODO: Add documentation for metadata (supported on iOS and Android)
   metadata: PropTypes.object,
   // TODO: customerId support
+
+  // Android Only: connected account to create the PaymentMethod on, overrides setStripeAccount
+  stripeAccount: PropTypes.string,
 }
 
 const confirmPaymentIntentPropTypeBase = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   clientSecret: PropTypes.string.isRequired,
   savePaymentMethod: PropTypes.bool,
   returnURL: PropTypes.string,
@@ -285,11 +420,15 @@ export const confirmPaymentIntentPropType = PropTypes.oneOfType([
 ]).isRequired
 
 export const authenticatePaymentIntentPropType = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   clientSecret: PropTypes.string.isRequired,
   returnURL: PropTypes.string,
 }
 
 const confirmSetupIntentPropTypeBase = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   clientSecret: PropTypes.string.isRequired,
   returnURL: PropTypes.string,
 }
@@ -310,6 +449,8 @@ export const confirmSetupIntentPropType = PropTypes.oneOfType([
 ]).isRequired
 
 export const authenticateSetupIntentPropType = {
+  ...callOptionsPropTypes,
+  ...resultOptionsPropTypes,
   clientSecret: PropTypes.string.isRequired,
   returnURL: PropTypes.string,
 }